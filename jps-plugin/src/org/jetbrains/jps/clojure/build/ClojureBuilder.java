@@ -6,20 +6,19 @@ import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.io.FileUtil;
-import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.Processor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.ModuleChunk;
 import org.jetbrains.jps.builders.DirtyFilesHolder;
 import org.jetbrains.jps.builders.FileProcessor;
 import org.jetbrains.jps.builders.java.JavaSourceRootDescriptor;
-import org.jetbrains.jps.builders.storage.SourceToOutputMapping;
 import org.jetbrains.jps.clojure.model.JpsClojureCompilerSettingsExtension;
 import org.jetbrains.jps.clojure.model.JpsClojureExtensionService;
 import org.jetbrains.jps.incremental.*;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.incremental.messages.CompilerMessage;
-import org.jetbrains.jps.incremental.messages.ProgressMessage;
 import org.jetbrains.jps.model.JpsDummyElement;
 import org.jetbrains.jps.model.JpsProject;
 import org.jetbrains.jps.model.java.JpsJavaExtensionService;
@@ -32,9 +31,8 @@ import org.jetbrains.jps.service.SharedThreadPool;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author nik, Alefas
@@ -44,10 +42,8 @@ public class ClojureBuilder extends ModuleLevelBuilder {
   public static final String COMPILER_NAME = "Clojure Compiler";
   public static final String CLOJURE_MAIN = "clojure.main";
 
-  public static final String COMPILING_PREFIX = "[compiling]:";
-  public static final String COMPILED_PREFIX = "[compiled]:";
-  public static final String ERROR_PREFIX = "[error]:";
-  public static final String WRITING_PREFIX = "[writing]:";
+  private static final int MAX_ERROR_OUTPUT = 4096;
+  private static final String PUBLISH_LOCK_FILE = "clojure-publish.lock";
   private final boolean myBeforeJava;
 
   public ClojureBuilder(boolean isBeforeJava) {
@@ -72,27 +68,70 @@ public class ClojureBuilder extends ModuleLevelBuilder {
       }
     }
 
-    final List<File> toCompile = new ArrayList<File>();
-    final HashMap<File, String> toCompileNamespace = new HashMap<File, String>();
+    File dataRoot = context.getProjectDescriptor().dataManager.getDataPaths().getTargetDataRoot(chunk.representativeTarget());
+    final ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(dataRoot);
+    final Set<String> changedNamespaces = new HashSet<String>();
+    final Set<String> dirtyPaths = new HashSet<String>();
+    //nodes replaced in this build, restored for files which fail to compile so that they count as changed next time
+    final Map<String, ClojureNamespaceGraph.Node> previousNodes = new HashMap<String, ClojureNamespaceGraph.Node>();
+
+    for (ModuleBuildTarget target : chunk.getTargets()) {
+      if (!javaModules.contains(target.getModule())) continue;
+      for (String removedPath : dirtyFilesHolder.getRemovedFiles(target)) {
+        ClojureNamespaceGraph.Node removed = graph.remove(removedPath);
+        if (removed != null) changedNamespaces.add(removed.namespace);
+      }
+    }
+
     dirtyFilesHolder.processDirtyFiles(new FileProcessor<JavaSourceRootDescriptor, ModuleBuildTarget>() {
       public boolean apply(ModuleBuildTarget target, File file, JavaSourceRootDescriptor sourceRoot) throws IOException {
         if (javaModules.contains(target.getModule()) && file.getName().endsWith(".clj")) {
-          if (!hasGenClass(file)) {
-            return true;
-          }
-          
-          toCompile.add(file);
-          
           String filePath = file.getAbsolutePath();
-          File rootFile = sourceRoot.getRootFile();
-          String relPath = filePath.substring(rootFile.getAbsolutePath().length() + 1, filePath.length() - ".clj".length());
-          toCompileNamespace.put(file, relPath.replace(File.separator, "."));
+          ClojureNamespaceGraph.Node previous = graph.get(filePath);
+          ClojureNamespaceGraph.Node node = previous != null && previous.isUpToDate(file) ? previous : readNode(file, sourceRoot);
+
+          //dependents need recompilation only if the file was really changed, not just marked dirty
+          if (node != previous) {
+            changedNamespaces.add(node.namespace);
+            previousNodes.put(filePath, previous);
+          }
+          if (previous != null && !previous.namespace.equals(node.namespace)) changedNamespaces.add(previous.namespace);
+          graph.put(filePath, node);
+          dirtyPaths.add(filePath);
         }
         return true;
       }
     });
 
-    if (toCompile.isEmpty()) return ExitCode.NOTHING_DONE;
+    if (!graph.isLoaded()) {
+      //without a stored graph the dependents of changed files are unknown, so all other files of the chunk are added
+      for (ModuleBuildTarget target : chunk.getTargets()) {
+        if (!javaModules.contains(target.getModule())) continue;
+        for (JavaSourceRootDescriptor sourceRoot : context.getProjectDescriptor().getBuildRootIndex().getTargetRoots(target, context)) {
+          addUnknownFiles(graph, sourceRoot);
+        }
+      }
+    }
+
+    Set<String> affectedPaths = graph.getAffectedFiles(changedNamespaces);
+    affectedPaths.addAll(dirtyPaths);
+    affectedPaths.addAll(graph.getPendingFiles());
+
+    List<String> toCompile = new ArrayList<String>();
+    final HashMap<File, String> toCompileNamespace = new HashMap<File, String>();
+    for (String path : graph.sortTopologically(affectedPaths)) {
+      ClojureNamespaceGraph.Node node = graph.get(path);
+      File file = new File(path);
+      if (node == null || !node.genClass || !file.exists()) continue;
+      toCompile.add(path);
+      toCompileNamespace.put(file, node.namespace);
+    }
+
+    if (toCompile.isEmpty()) {
+      graph.setPendingFiles(Collections.<String>emptySet());
+      graph.save();
+      return ExitCode.NOTHING_DONE;
+    }
 
     JpsSdk<JpsDummyElement> sdk = chunk.representativeTarget().getModule().getSdk(JpsJavaSdkType.INSTANCE);
     if (sdk == null) {
@@ -100,9 +139,9 @@ public class ClojureBuilder extends ModuleLevelBuilder {
       return ExitCode.ABORT;
     }
 
-    String javaExecutable = JpsJavaSdkType.getJavaExecutable(sdk);
+    final String javaExecutable = JpsJavaSdkType.getJavaExecutable(sdk);
 
-    List<String> classpath = new ArrayList<String>();
+    final List<String> classpath = new ArrayList<String>();
     for (File root : JpsJavaExtensionService.getInstance().enumerateDependencies(javaModules).classes().getRoots()) {
       classpath.add(root.getAbsolutePath());
     }
@@ -112,15 +151,121 @@ public class ClojureBuilder extends ModuleLevelBuilder {
       }
     }
 
+    final File outputDir = chunk.representativeTarget().getOutputDir();
+    outputDir.mkdirs();
+    final boolean useCompileServer = extension != null && extension.isUseCompileServer();
+    final String chunkId = chunk.representativeTarget().getId() + File.pathSeparator + outputDir.getAbsolutePath();
+    //workers may compile the same shared namespaces, so they take turns writing classes to the output directory
+    final File publishLock = new File(dataRoot, PUBLISH_LOCK_FILE);
+    FileUtil.createParentDirs(publishLock);
+
+    int workers = extension != null ? Math.max(1, extension.getCompilerWorkers()) : 1;
+    List<List<String>> groups = graph.partition(toCompile, workers);
+    final Set<String> compiled = Collections.synchronizedSet(new HashSet<String>());
+    if (groups.size() == 1) {
+      compiled.addAll(compileFiles(context, chunk, outputConsumer, toFiles(groups.get(0)), toCompileNamespace, javaExecutable,
+          classpath, outputDir, publishLock, useCompileServer ? chunkId : null));
+      saveGraph(graph, toCompile, compiled, previousNodes);
+      return ExitCode.OK;
+    }
+
+    //independent groups of namespaces are compiled by separate processes, every one with its own output handler
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int i = 0; i < groups.size(); i++) {
+      final List<File> group = toFiles(groups.get(i));
+      final String serverId = useCompileServer ? chunkId + "#" + i : null;
+      futures.add(SharedThreadPool.getInstance().executeOnPooledThread(new Runnable() {
+        public void run() {
+          try {
+            compiled.addAll(compileFiles(context, chunk, outputConsumer, group, toCompileNamespace, javaExecutable, classpath,
+                outputDir, publishLock, serverId));
+          } catch (IOException e) {
+            context.processMessage(new CompilerMessage(COMPILER_NAME, BuildMessage.Kind.ERROR, e.getMessage()));
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        throw new ProjectBuildException(e);
+      } catch (ExecutionException e) {
+        throw new ProjectBuildException(e.getCause());
+      }
+    }
+
+    saveGraph(graph, toCompile, compiled, previousNodes);
+    return ExitCode.OK;
+  }
+
+  /**
+   * Saves the graph once compilation is over. Files which failed to compile get their previous nodes back
+   * and are kept as pending, so the next build compiles them and their dependents again.
+   */
+  private static void saveGraph(ClojureNamespaceGraph graph, List<String> toCompile, Set<String> compiled,
+                                Map<String, ClojureNamespaceGraph.Node> previousNodes) throws IOException {
+    List<String> failed = new ArrayList<String>(toCompile);
+    failed.removeAll(compiled);
+    for (String path : failed) {
+      if (!previousNodes.containsKey(path)) continue;
+      ClojureNamespaceGraph.Node previous = previousNodes.get(path);
+      if (previous != null) {
+        graph.put(path, previous);
+      } else {
+        graph.remove(path);
+      }
+    }
+    graph.setPendingFiles(failed);
+    graph.save();
+  }
+
+  private static List<File> toFiles(List<String> paths) {
+    List<File> files = new ArrayList<File>(paths.size());
+    for (String path : paths) {
+      files.add(new File(path));
+    }
+    return files;
+  }
+
+  /**
+   * @param serverId id of the compile server to use, or null to compile in a new process
+   * @return paths of the files compiled without errors
+   */
+  private Set<String> compileFiles(CompileContext context, ModuleChunk chunk, OutputConsumer outputConsumer,
+                            List<File> toCompile, HashMap<File, String> toCompileNamespace,
+                            String javaExecutable, List<String> classpath, File outputDir, File publishLock,
+                            @Nullable String serverId) throws IOException {
     List<String> vmParams = new ArrayList<String>();
 //    vmParams.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=y,address=5239");
     List<String> programParams = new ArrayList<String>();
-    File outputDir = chunk.representativeTarget().getOutputDir();
-    outputDir.mkdirs();
-    
+
     File fileWithCompileScript = FileUtil.createTempFile("clojurekul", ".clj");
-    fillFileWithClojureCompilerParams(toCompile, toCompileNamespace, fileWithCompileScript, outputDir);
+    File stagingDir = FileUtil.createTempDirectory("clojurekul", "-classes");
+    ClojureCompilerChannel channel = new ClojureCompilerChannel();
+    fillFileWithClojureCompilerParams(toCompile, toCompileNamespace, fileWithCompileScript, outputDir, stagingDir, publishLock, channel.getPort());
     programParams.add(fileWithCompileScript.getAbsolutePath());
+
+    ClojureCompilerOutputHandler outputHandler = new ClojureCompilerOutputHandler(context, chunk, outputConsumer);
+    channel.startReading(outputHandler);
+
+    try {
+      if (serverId != null) {
+        ClojureCompileServer.compile(serverId, javaExecutable, classpath, vmParams, fileWithCompileScript, outputHandler);
+      } else {
+        runCompilerProcess(context, javaExecutable, classpath, vmParams, programParams);
+      }
+    } catch (IOException e) {
+      context.processMessage(new CompilerMessage(COMPILER_NAME, BuildMessage.Kind.ERROR, e.getMessage()));
+    } finally {
+      channel.close();
+      FileUtil.delete(stagingDir);
+    }
+    return outputHandler.getSucceeded();
+  }
+
+  private static void runCompilerProcess(CompileContext context, String javaExecutable, List<String> classpath,
+                                         List<String> vmParams, List<String> programParams) throws IOException {
     List<String> commandLine =
         ExternalProcessUtil.buildJavaCommandLine(javaExecutable, CLOJURE_MAIN, Collections.<String>emptyList(), classpath, vmParams, programParams);
 
@@ -133,113 +278,128 @@ public class ClojureBuilder extends ModuleLevelBuilder {
       }
     };
 
-    final SourceToOutputMapping sourceToOutputMap = context.getProjectDescriptor().dataManager.getSourceToOutputMap(chunk.representativeTarget());
-
-    final HashSet<String> outputs = new HashSet<String>();
-
+    //compiler messages come through the channel, the output is only kept to explain an abnormal exit
+    final StringBuilder errorOutput = new StringBuilder();
     handler.addProcessListener(new ProcessAdapter() {
       @Override
       public void onTextAvailable(ProcessEvent event, Key outputType) {
-        if (outputType != ProcessOutputTypes.STDERR) return;
-        String text = event.getText().trim();
-        context.processMessage(new ProgressMessage(text));
-//        context.processMessage(new CompilerMessage(COMPILER_NAME, BuildMessage.Kind.WARNING, text));
-        if (text.startsWith(ERROR_PREFIX)) {
-          String errorDescription = text.substring(ERROR_PREFIX.length());
-          Pattern pattern = Pattern.compile("(.*)@@((.*) compiling:[(](.*):([\\d]*)(:([\\d]*))?[)])");
-          Matcher matcher = pattern.matcher(errorDescription);
-          if (matcher.matches()) {
-            String sourceName = matcher.group(1);
-            String lineNumber = matcher.group(5);
-            String columnNumber = matcher.group(6);
-            Long locationLine = -1L;
-            Long column = 0L;
-            try {
-              locationLine = Long.parseLong(lineNumber);
-              if (columnNumber != null) {
-                column = Long.parseLong(columnNumber);
-              }
-            } catch (Exception ignore) {}
-            String errorMessage = matcher.group(2);
-            context.processMessage(new CompilerMessage(COMPILER_NAME, BuildMessage.Kind.ERROR, errorMessage,
-                sourceName, -1L, -1L, -1L, locationLine, column));
-          } else {
-            matcher = Pattern.compile("(.*)@@(.*)").matcher(errorDescription);
-            if (matcher.matches()) {
-              context.processMessage(new CompilerMessage(COMPILER_NAME, BuildMessage.Kind.ERROR, matcher.group(2), matcher.group(1)));
-            } else {
-              context.processMessage(new CompilerMessage(COMPILER_NAME, BuildMessage.Kind.ERROR, text));
-            }
-          }
-        } else if (text.startsWith(COMPILING_PREFIX)) {
-          //we don't need to do anything
-        } else if (text.startsWith(WRITING_PREFIX)) {
-          outputs.add(text.substring(WRITING_PREFIX.length()));
-        } else if (text.startsWith(COMPILED_PREFIX)) {
-          for (String output : outputs) {
-            try {
-              outputConsumer.registerOutputFile(chunk.representativeTarget(),
-                  new File(output),
-                  Collections.singleton(text.substring(COMPILED_PREFIX.length())));
-            } catch (IOException e) {
-              context.processMessage(new BuildMessage(e.getMessage(), BuildMessage.Kind.ERROR) {});
-            }
-          }
-          outputs.clear();
-        }
+        if (outputType != ProcessOutputTypes.STDERR || errorOutput.length() >= MAX_ERROR_OUTPUT) return;
+        errorOutput.append(event.getText(), 0, Math.min(event.getText().length(), MAX_ERROR_OUTPUT - errorOutput.length()));
       }
     });
 
     handler.startNotify();
     handler.waitFor();
     if (process.exitValue() != 0) {
-      context.processMessage(new CompilerMessage(COMPILER_NAME, BuildMessage.Kind.ERROR, "Clojure compiler returned code " + process.exitValue()));
+      context.processMessage(new CompilerMessage(COMPILER_NAME, BuildMessage.Kind.ERROR,
+          "Clojure compiler returned code " + process.exitValue() + "\n" + errorOutput));
     }
+  }
 
-    return ExitCode.OK;
+  /**
+   * Adds nodes of the Clojure files under the source root which aren't in the graph yet
+   */
+  private static void addUnknownFiles(final ClojureNamespaceGraph graph, final JavaSourceRootDescriptor sourceRoot) {
+    FileUtil.processFilesRecursively(sourceRoot.getRootFile(), new Processor<File>() {
+      public boolean process(File file) {
+        if (!file.isFile() || !file.getName().endsWith(".clj")) return true;
+        String filePath = file.getAbsolutePath();
+        if (graph.get(filePath) != null) return true;
+        try {
+          graph.put(filePath, readNode(file, sourceRoot));
+        } catch (IOException ignore) {
+          //an unreadable file has no known dependencies
+        }
+        return true;
+      }
+    });
   }
 
-  private static boolean hasGenClass(File file) throws IOException {
-    return new String(FileUtilRt.loadFileText(file)).contains(":gen-class");
+  private static ClojureNamespaceGraph.Node readNode(File file, JavaSourceRootDescriptor sourceRoot) throws IOException {
+    long timestamp = file.lastModified();
+    long length = file.length();
+    ClojureNamespaceHeader header = ClojureNamespaceHeader.parse(file);
+    if (header != null) {
+      return new ClojureNamespaceGraph.Node(header.getName(), header.getDependencies(), header.isGenClass(), timestamp, length);
+    }
+    String filePath = file.getAbsolutePath();
+    File rootFile = sourceRoot.getRootFile();
+    String relPath = filePath.substring(rootFile.getAbsolutePath().length() + 1, filePath.length() - ".clj".length());
+    return new ClojureNamespaceGraph.Node(relPath.replace(File.separator, "."), Collections.<String>emptySet(), false, timestamp, length);
   }
 
+  private static String escape(File file) {
+    return file.getAbsolutePath().replace("\\", "\\\\");
+  }
+
+  /**
+   * Every file is compiled into its own empty staging directory, so whatever appears there is exactly what
+   * the compiler wrote for that file. The classes are then moved into the output directory and reported
+   * one by one, which keeps the cost proportional to the written classes rather than to the size of the output.
+   * Moving holds a lock on <code>publishLock</code>, as parallel workers may write the same classes.
+   * All reports go through the {@link ClojureCompilerChannel} listening on <code>channelPort</code>.
+   */
   private void fillFileWithClojureCompilerParams(List<File> toCompile, HashMap<File, String> toCompileNamespace,
-                                                 File fileWithCompileScript, File outputDir) throws FileNotFoundException {
+                                                 File fileWithCompileScript, File outputDir, File stagingDir,
+                                                 File publishLock, int channelPort) throws FileNotFoundException {
     PrintStream printer = new PrintStream(new FileOutputStream(fileWithCompileScript));
 
-    printer.print("(import (java.io File))\n" +
-        "(import (java.util HashSet))\n");
-
-    //print output path
-    printer.print("(binding [*compile-path* ");
-    String outputDirPath = outputDir.getAbsolutePath().replace("\\", "\\\\");
-    printer.print("\"" + outputDirPath + "\" *compile-files* true]\n");
-
+    printer.print("(import (java.io File DataOutputStream BufferedOutputStream RandomAccessFile) (java.net Socket))\n" +
+        "(require (quote clojure.java.io))\n");
+
+    printer.print("(def #^DataOutputStream intellij-channel\n" +
+        "  (DataOutputStream. (BufferedOutputStream. (.getOutputStream (Socket. \"127.0.0.1\" (int " + channelPort + "))))))\n" +
+        "(defn intellij-write-string [s]\n" +
+        "  (let [#^bytes bytes (.getBytes (str s) \"UTF-8\")]\n" +
+        "    (.writeInt intellij-channel (alength bytes))\n" +
+        "    (.write intellij-channel bytes 0 (alength bytes))))\n" +
+        "(defn intellij-report [kind path]\n" +
+        "  (.writeByte intellij-channel (int kind))\n" +
+        "  (intellij-write-string path)\n" +
+        "  (when-not (= kind " + ClojureCompilerChannel.WRITING + ") (.flush intellij-channel)))\n" +
+        "(defn intellij-report-error [path #^Throwable e]\n" +
+        "  (let [msg (str (.getMessage e))\n" +
+        "        [_ line column] (re-find #\"compiling:\\(.*?:(\\d+)(?::(\\d+))?\\)\" msg)]\n" +
+        "    (.writeByte intellij-channel (int " + ClojureCompilerChannel.MESSAGE + "))\n" +
+        "    (intellij-write-string path)\n" +
+        "    (.writeByte intellij-channel (int " + ClojureCompilerChannel.ERROR + "))\n" +
+        "    (intellij-write-string msg)\n" +
+        "    (.writeInt intellij-channel (int (if line (Integer/parseInt line) -1)))\n" +
+        "    (.writeInt intellij-channel (int (if column (Integer/parseInt column) -1)))\n" +
+        "    (.flush intellij-channel)))\n");
+
+    //the lock is held by the process until the lock file is closed
+    printer.print("(defn intellij-publish-classes [#^File staging #^File output]\n" +
+        "  (with-open [lock-file (RandomAccessFile. (File. \"" + escape(publishLock) + "\") \"rw\")]\n" +
+        "    (.lock (.getChannel lock-file))\n" +
+        "    (let [prefix-length (inc (.length (.getAbsolutePath staging)))]\n" +
+        "      (doseq [#^File file (file-seq staging) :when (.isFile file)]\n" +
+        "        (let [target (File. output (subs (.getAbsolutePath file) prefix-length))]\n" +
+        "          (.mkdirs (.getParentFile target))\n" +
+        "          (when-not (or (.renameTo file target) (and (.delete target) (.renameTo file target)))\n" +
+        "            (clojure.java.io/copy file target)\n" +
+        "            (.delete file))\n" +
+        "          (intellij-report " + ClojureCompilerChannel.WRITING + " (.getAbsolutePath target))))\n" +
+        "      (doseq [#^File dir (reverse (file-seq staging))] (.delete dir)))))\n");
+
+    printer.print("(try (binding [*compile-files* true]\n");
+
+    String outputDirPath = escape(outputDir);
+    int index = 0;
     for (File file : toCompile) {
-      //collecting current outputs in output directory
-      printer.print(
-              "(def outputDir \"" + outputDirPath + "\")\n" +
-              "(def output (new HashSet))\n" +
-              "(def outputFile (new File outputDir))\n" +
-              "(defn scanOutput [#^HashSet out #^File file]\n" +
-              "  (if (.isDirectory file)\n" +
-              "    (doseq [i (.listFiles file)] (scanOutput out i))\n" +
-              "    (.add out (.getAbsolutePath file))))\n" +
-              "\n" +
-              "(scanOutput output outputFile)\n");
+      String stagingPath = escape(new File(stagingDir, String.valueOf(index++)));
+      printer.print("(.mkdirs (File. \"" + stagingPath + "\"))\n");
+      printer.print("(binding [*compile-path* \"" + stagingPath + "\"]\n");
 
       printer.print("(try ");
-      String absolutePath = file.getAbsolutePath().replace("\\", "\\\\");
-      printer.print("(. *err* println ");
-      printer.print("\"" + COMPILING_PREFIX + absolutePath + "\"");
-      printer.print(")\n");
+      String absolutePath = escape(file);
+      printer.print("(intellij-report " + ClojureCompilerChannel.COMPILING + " \"" + absolutePath + "\")\n");
 
       printer.print("(load-file \"");
       printer.print(absolutePath);
       printer.print("\")\n");
 
-      printer.print("(catch Exception e (. *err* println (str \"" + ERROR_PREFIX + absolutePath +
-          "@@" + "\" (let [msg (.getMessage e)] msg)  ) ) )");
+      printer.print("(catch Exception e (intellij-report-error \"" + absolutePath + "\" e))");
       printer.print(")\n");
 
       //we need to compile namespace init class, otherwise we will get CNFE on Runtime
@@ -252,22 +412,16 @@ public class ClojureBuilder extends ModuleLevelBuilder {
         printer.print("(catch Exception e ())"); //all compile error should be found in file compilation
         printer.print(")\n");
       }
-
-      //let's print information about all new created files in output directory
-      printer.print("(defn printNewFiles [#^File file]\n" +
-          "  (if (.isDirectory file)\n" +
-          "    (doseq [i (.listFiles file)] (printNewFiles i))\n" +
-          "    (if (not (.contains output (.getAbsolutePath file))) (. *err* println " +
-          "(.concat \"" + WRITING_PREFIX + "\" (.getAbsolutePath file))))))\n" +
-          "(printNewFiles outputFile)\n" +
-          "(.clear output)");
-
-      printer.print("(. *err* println ");
-      printer.print("\"" + COMPILED_PREFIX + absolutePath + "\"");
       printer.print(")\n");
+
+      //move classes written for this file to the output directory and report them
+      printer.print("(intellij-publish-classes (File. \"" + stagingPath + "\") (File. \"" + outputDirPath + "\"))\n");
+
+      printer.print("(intellij-report " + ClojureCompilerChannel.COMPILED + " \"" + absolutePath + "\")\n");
     }
 
-    printer.print(")");
+    //the compile server keeps running, so the channel has to be closed explicitly
+    printer.print(")\n(finally (.close intellij-channel)))");
     printer.close();
   }
 
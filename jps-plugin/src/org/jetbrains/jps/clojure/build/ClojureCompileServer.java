@@ -0,0 +1,261 @@
+package org.jetbrains.jps.clojure.build;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.incremental.ExternalProcessUtil;
+import org.jetbrains.jps.incremental.Utils;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Long-lived <code>clojure.main</code> process which loads compile scripts sent to it over a local socket,
+ * so incremental builds don't pay for JVM and Clojure runtime startup every time.
+ * <p/>
+ * There is one server per module chunk. Its port is published in a file under the build system directory together
+ * with a hash of the JDK, classpath and VM options it was started with; when the hash doesn't match
+ * the server is shut down and a new one is started. An idle server exits by itself.
+ * <p/>
+ * Before every request the server removes all namespaces loaded since its startup and forgets them in
+ * <code>*loaded-libs*</code>, so a changed namespace required by a compiled one is loaded from its new source
+ * instead of being reused. Only the JVM and the Clojure runtime stay warm between builds.
+ */
+public class ClojureCompileServer {
+  private static final String FINISHED_PREFIX = "[finished]:";
+  private static final String ERROR_PREFIX = "[error]:";
+
+  private static final String SERVER_DIRECTORY = "clojure-compile-server";
+  private static final String SHUTDOWN_REQUEST = ":shutdown";
+  private static final int STARTUP_TIMEOUT = 60 * 1000;
+  private static final int IDLE_TIMEOUT = 30 * 60 * 1000;
+
+  private static final String SERVER_SCRIPT =
+      "(import '(java.io File FileOutputStream PrintStream PrintWriter OutputStreamWriter BufferedReader InputStreamReader)\n" +
+      "        '(java.net ServerSocket InetAddress Socket SocketTimeoutException))\n" +
+      "\n" +
+      "(def intellij-initial-namespaces (set (map ns-name (all-ns))))\n" +
+      "(def intellij-initial-libs @@#'clojure.core/*loaded-libs*)\n" +
+      "\n" +
+      "(defn intellij-reset []\n" +
+      "  (doseq [name (map ns-name (all-ns)) :when (not (contains? intellij-initial-namespaces name))]\n" +
+      "    (remove-ns name))\n" +
+      "  (dosync (ref-set @#'clojure.core/*loaded-libs* intellij-initial-libs)))\n" +
+      "\n" +
+      "(defn intellij-serve [^Socket socket]\n" +
+      "  (with-open [socket socket]\n" +
+      "    (let [in (BufferedReader. (InputStreamReader. (.getInputStream socket) \"UTF-8\"))\n" +
+      "          err (PrintWriter. (OutputStreamWriter. (.getOutputStream socket) \"UTF-8\") true)\n" +
+      "          request (.readLine in)]\n" +
+      "      (if (or (nil? request) (= request \"" + SHUTDOWN_REQUEST + "\"))\n" +
+      "        (nil? request)\n" +
+      "        (do\n" +
+      "          (binding [*err* err]\n" +
+      "            (try (intellij-reset)\n" +
+      "                 (load-file request)\n" +
+      "              (catch Throwable e (.println err (str \"" + ERROR_PREFIX + "\" (.getMessage e))))))\n" +
+      "          (.println err \"" + FINISHED_PREFIX + "\")\n" +
+      "          true)))))\n" +
+      "\n" +
+      "(let [[port-path hash log-path] *command-line-args*\n" +
+      "      log (PrintStream. (FileOutputStream. ^String log-path true) true)\n" +
+      "      server (ServerSocket. 0 50 (InetAddress/getByName \"127.0.0.1\"))\n" +
+      "      port-file (File. ^String port-path)\n" +
+      "      tmp-file (File. (str port-path \".tmp\"))]\n" +
+      "  (System/setOut log)\n" +
+      "  (System/setErr log)\n" +
+      "  (.setSoTimeout server " + IDLE_TIMEOUT + ")\n" +
+      "  (spit tmp-file (str hash \"\\n\" (.getLocalPort server)))\n" +
+      "  (.delete port-file)\n" +
+      "  (.renameTo tmp-file port-file)\n" +
+      "  (binding [*out* (PrintWriter. log true) *err* (PrintWriter. log true)]\n" +
+      "    (try\n" +
+      "      (loop []\n" +
+      "        (when (try (intellij-serve (.accept server))\n" +
+      "                (catch SocketTimeoutException e false)\n" +
+      "                (catch Exception e (.printStackTrace e) true))\n" +
+      "          (recur)))\n" +
+      "      (finally\n" +
+      "        (.close server)\n" +
+      "        (when (and (.exists port-file) (.startsWith (slurp port-file) (str hash \"\\n\")))\n" +
+      "          (.delete port-file)))))\n" +
+      "  (System/exit 0))\n";
+
+  private final File myPortFile;
+  private final String myHash;
+
+  private ClojureCompileServer(File portFile, String hash) {
+    myPortFile = portFile;
+    myHash = hash;
+  }
+
+  /**
+   * Loads <code>compileScript</code> in the compile server of the chunk, starting the server if needed.
+   * The script reports through its own channel; the server connection only reports failures to load the script.
+   */
+  public static void compile(String chunkId, String javaExecutable, List<String> classpath, List<String> vmParams,
+                             File compileScript, ClojureCompilerOutputHandler outputHandler) throws IOException {
+    File serverDir = getServerDirectory(Utils.getSystemRoot());
+    serverDir.mkdirs();
+    //servers started by an older version of the script are replaced as well
+    String hash = Integer.toHexString((javaExecutable + File.pathSeparator + StringUtil.join(classpath, File.pathSeparator) +
+        File.pathSeparator + StringUtil.join(vmParams, " ") + File.pathSeparator + SERVER_SCRIPT).hashCode());
+    File portFile = new File(serverDir, Integer.toHexString(chunkId.hashCode()) + ".port");
+    ClojureCompileServer server = new ClojureCompileServer(portFile, hash);
+
+    Integer port = server.findRunningPort();
+    if (port == null || !send(port, compileScript, outputHandler)) {
+      port = server.start(serverDir, javaExecutable, classpath, vmParams);
+      if (!send(port, compileScript, outputHandler)) {
+        throw new IOException("Clojure compile server terminated unexpectedly");
+      }
+    }
+  }
+
+  /**
+   * @return directory of the port files and logs of the servers started by builds with the system root
+   */
+  public static File getServerDirectory(File systemRoot) {
+    return new File(systemRoot, SERVER_DIRECTORY);
+  }
+
+  /**
+   * Asks all servers started by builds with the system root to shut down, without waiting for them to exit
+   */
+  public static void shutdownAll(File systemRoot) {
+    File[] portFiles = getServerDirectory(systemRoot).listFiles();
+    if (portFiles == null) return;
+    for (File portFile : portFiles) {
+      if (!portFile.getName().endsWith(".port")) continue;
+      String[] description = new ClojureCompileServer(portFile, "").readPortFile();
+      if (description == null) continue;
+      try {
+        request(Integer.parseInt(description[1].trim()), SHUTDOWN_REQUEST).close();
+      }
+      catch (NumberFormatException ignore) {
+      }
+      catch (IOException ignore) {
+      }
+    }
+  }
+
+  /**
+   * @return port of the server started with the same parameters, or null if there is none.
+   *         A server started with different parameters is asked to shut down.
+   */
+  @Nullable
+  private Integer findRunningPort() {
+    String[] description = readPortFile();
+    if (description == null) return null;
+    try {
+      int port = Integer.parseInt(description[1].trim());
+      if (myHash.equals(description[0])) return port;
+      request(port, SHUTDOWN_REQUEST).close();
+    }
+    catch (NumberFormatException ignore) {
+    }
+    catch (IOException ignore) {
+    }
+    FileUtil.delete(myPortFile);
+    return null;
+  }
+
+  @Nullable
+  private String[] readPortFile() {
+    if (!myPortFile.exists()) return null;
+    try {
+      String[] description = FileUtil.loadFile(myPortFile).split("\n");
+      return description.length == 2 ? description : null;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private int start(File serverDir, String javaExecutable, List<String> classpath, List<String> vmParams) throws IOException {
+    File serverScript = new File(serverDir, "server.clj");
+    FileUtil.writeToFile(serverScript, SERVER_SCRIPT);
+    FileUtil.delete(myPortFile);
+
+    List<String> programParams = Arrays.asList(serverScript.getAbsolutePath(), myPortFile.getAbsolutePath(), myHash,
+        new File(serverDir, FileUtil.getNameWithoutExtension(myPortFile) + ".log").getAbsolutePath());
+    List<String> commandLine = ExternalProcessUtil.buildJavaCommandLine(javaExecutable, ClojureBuilder.CLOJURE_MAIN,
+        new ArrayList<String>(), classpath, vmParams, programParams);
+    Process process = Runtime.getRuntime().exec(ArrayUtil.toStringArray(commandLine));
+    // the server redirects its own output to the log file, so it must not depend on our pipes
+    process.getOutputStream().close();
+    process.getInputStream().close();
+    process.getErrorStream().close();
+
+    long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+    while (System.currentTimeMillis() < deadline) {
+      String[] description = readPortFile();
+      if (description != null && myHash.equals(description[0])) {
+        return Integer.parseInt(description[1].trim());
+      }
+      try {
+        throw new IOException("Clojure compile server exited with code " + process.exitValue());
+      }
+      catch (IllegalThreadStateException ignore) {
+        // still starting
+      }
+      try {
+        Thread.sleep(100);
+      }
+      catch (InterruptedException e) {
+        break;
+      }
+    }
+    process.destroy();
+    throw new IOException("Clojure compile server didn't start in " + STARTUP_TIMEOUT / 1000 + " seconds");
+  }
+
+  /**
+   * @return false if the server couldn't be reached or died before finishing the request
+   */
+  private static boolean send(int port, File compileScript, ClojureCompilerOutputHandler outputHandler) {
+    Socket socket;
+    try {
+      socket = request(port, compileScript.getAbsolutePath());
+    }
+    catch (IOException e) {
+      return false;
+    }
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(FINISHED_PREFIX)) return true;
+        if (line.startsWith(ERROR_PREFIX)) {
+          outputHandler.message(compileScript.getAbsolutePath(), BuildMessage.Kind.ERROR,
+              line.substring(ERROR_PREFIX.length()), -1, -1);
+        }
+      }
+      return false;
+    }
+    catch (IOException e) {
+      return false;
+    }
+    finally {
+      try {
+        socket.close();
+      }
+      catch (IOException ignore) {
+      }
+    }
+  }
+
+  private static Socket request(int port, String request) throws IOException {
+    Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+    Writer writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+    writer.write(request + "\n");
+    writer.flush();
+    return socket;
+  }
+}
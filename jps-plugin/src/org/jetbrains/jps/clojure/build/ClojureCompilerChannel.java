@@ -0,0 +1,147 @@
+package org.jetbrains.jps.clojure.build;
+
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+import org.jetbrains.jps.service.SharedThreadPool;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Local socket the generated compile script reports its progress through, so that nothing the compiled code
+ * prints to <code>*out*</code> or <code>*err*</code> can be confused with compiler messages.
+ * <p/>
+ * Every record starts with a kind byte followed by the fields of that kind. Strings are UTF-8 bytes prefixed
+ * with their length as an int, numbers are ints:
+ * <ul>
+ *   <li>{@link #COMPILING}: source path</li>
+ *   <li>{@link #WRITING}: output class path</li>
+ *   <li>{@link #COMPILED}: source path</li>
+ *   <li>{@link #MESSAGE}: source path, severity byte ({@link #ERROR}, {@link #WARNING} or {@link #INFO}), text, line, column</li>
+ * </ul>
+ */
+public class ClojureCompilerChannel {
+  public static final int COMPILING = 1;
+  public static final int WRITING = 2;
+  public static final int COMPILED = 3;
+  public static final int MESSAGE = 4;
+
+  public static final int ERROR = 0;
+  public static final int WARNING = 1;
+  public static final int INFO = 2;
+
+  private final ServerSocket myServerSocket;
+  private Future<?> myReader;
+  private byte[] myBuffer = new byte[1024];
+
+  public ClojureCompilerChannel() throws IOException {
+    myServerSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+  }
+
+  public int getPort() {
+    return myServerSocket.getLocalPort();
+  }
+
+  /**
+   * Starts waiting for the script to connect; records are passed to <code>outputHandler</code> on a pooled thread.
+   * Connections are accepted one after another until the channel is closed, as the compile server may run
+   * the script again after a failed attempt.
+   */
+  public void startReading(final ClojureCompilerOutputHandler outputHandler) {
+    myReader = SharedThreadPool.getInstance().executeOnPooledThread(new Runnable() {
+      public void run() {
+        while (!myServerSocket.isClosed()) {
+          Socket socket;
+          try {
+            socket = myServerSocket.accept();
+          }
+          catch (IOException e) {
+            return; // closed
+          }
+          try {
+            read(new DataInputStream(new BufferedInputStream(socket.getInputStream())), outputHandler);
+          }
+          catch (IOException ignore) {
+            // the script died in the middle of a record
+          }
+          finally {
+            try {
+              socket.close();
+            }
+            catch (IOException ignore) {
+            }
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Must be called after the script has finished: waits until all its records are processed.
+   */
+  public void close() throws IOException {
+    myServerSocket.close();
+    if (myReader == null) return;
+    try {
+      myReader.get();
+    }
+    catch (InterruptedException e) {
+      throw new IOException(e.getMessage());
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e.getCause().getMessage());
+    }
+  }
+
+  private void read(DataInputStream input, ClojureCompilerOutputHandler outputHandler) throws IOException {
+    while (true) {
+      int kind = input.read();
+      switch (kind) {
+        case -1:
+          return;
+        case COMPILING:
+          outputHandler.compiling(readString(input));
+          break;
+        case WRITING:
+          outputHandler.writing(readString(input));
+          break;
+        case COMPILED:
+          outputHandler.compiled(readString(input));
+          break;
+        case MESSAGE:
+          String sourcePath = readString(input);
+          BuildMessage.Kind severity = toKind(input.readByte());
+          String text = readString(input);
+          int line = input.readInt();
+          int column = input.readInt();
+          outputHandler.message(sourcePath, severity, text, line, column);
+          break;
+        default:
+          throw new IOException("Unknown record kind: " + kind);
+      }
+    }
+  }
+
+  private String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length > myBuffer.length) {
+      myBuffer = new byte[Math.max(length, myBuffer.length * 2)];
+    }
+    input.readFully(myBuffer, 0, length);
+    return new String(myBuffer, 0, length, "UTF-8");
+  }
+
+  private static BuildMessage.Kind toKind(int severity) {
+    switch (severity) {
+      case WARNING:
+        return BuildMessage.Kind.WARNING;
+      case INFO:
+        return BuildMessage.Kind.INFO;
+      default:
+        return BuildMessage.Kind.ERROR;
+    }
+  }
+}
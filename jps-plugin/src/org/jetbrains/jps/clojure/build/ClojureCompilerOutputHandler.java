@@ -0,0 +1,85 @@
+package org.jetbrains.jps.clojure.build;
+
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.ModuleChunk;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.ModuleLevelBuilder;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+import org.jetbrains.jps.incremental.messages.CompilerMessage;
+import org.jetbrains.jps.incremental.messages.ProgressMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.jetbrains.jps.clojure.build.ClojureBuilder.COMPILER_NAME;
+
+/**
+ * Handles records sent by the generated compile script through {@link ClojureCompilerChannel}, no matter whether
+ * the script runs in a fresh process or in the compile server.
+ */
+public class ClojureCompilerOutputHandler {
+  private final CompileContext myContext;
+  private final ModuleChunk myChunk;
+  private final ModuleLevelBuilder.OutputConsumer myOutputConsumer;
+  private final List<String> myOutputs = new ArrayList<String>();
+  private final Set<String> myCompiled = new HashSet<String>();
+  private final Set<String> myFailed = new HashSet<String>();
+
+  public ClojureCompilerOutputHandler(CompileContext context, ModuleChunk chunk, ModuleLevelBuilder.OutputConsumer outputConsumer) {
+    myContext = context;
+    myChunk = chunk;
+    myOutputConsumer = outputConsumer;
+  }
+
+  public void compiling(String sourcePath) {
+    //outputs of a file whose compilation was cut short, it's compiled again and reports them once more
+    myOutputs.clear();
+    myContext.processMessage(new ProgressMessage("Compiling " + sourcePath));
+  }
+
+  public void writing(String outputPath) {
+    myOutputs.add(outputPath);
+  }
+
+  public void compiled(String sourcePath) {
+    //several compiler processes may report their outputs at the same time
+    synchronized (myOutputConsumer) {
+      for (String output : myOutputs) {
+        try {
+          myOutputConsumer.registerOutputFile(myChunk.representativeTarget(), new File(output), Collections.singleton(sourcePath));
+        } catch (IOException e) {
+          myContext.processMessage(new BuildMessage(e.getMessage(), BuildMessage.Kind.ERROR) {});
+        }
+      }
+    }
+    myOutputs.clear();
+    myCompiled.add(sourcePath);
+  }
+
+  /**
+   * @param line   1-based line, or -1 if unknown
+   * @param column 1-based column, or -1 if unknown
+   */
+  public void message(@Nullable String sourcePath, BuildMessage.Kind kind, String text, long line, long column) {
+    if (kind == BuildMessage.Kind.ERROR && sourcePath != null) {
+      myFailed.add(sourcePath);
+    }
+    myContext.processMessage(new CompilerMessage(COMPILER_NAME, kind, text, sourcePath, -1L, -1L, -1L, line, column));
+  }
+
+  /**
+   * Must be called after the channel is closed
+   *
+   * @return source paths compiled without errors
+   */
+  public Set<String> getSucceeded() {
+    Set<String> succeeded = new HashSet<String>(myCompiled);
+    succeeded.removeAll(myFailed);
+    return succeeded;
+  }
+}
@@ -0,0 +1,296 @@
+package org.jetbrains.jps.clojure.build;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Namespace dependency graph of Clojure files of a module chunk, persisted between builds in the build data
+ * of its representative target. It is used to find the files whose AOT classes are invalidated by a change
+ * and to compile them after the namespaces they depend on. Nodes remember timestamp and length of their files,
+ * so headers of unchanged files are never read again. Files which failed to compile are kept as pending ones
+ * and compiled again by the next build.
+ * <p/>
+ * The graph only knows namespaces of its chunk: classes compiled in modules depending on the chunk are not
+ * invalidated by changes of its namespaces, such modules have to be rebuilt. If there is no stored graph
+ * of the current version, the builder reads headers of all files of the chunk, see {@link #isLoaded()}.
+ */
+public class ClojureNamespaceGraph {
+  private static final int VERSION = 3;
+  private static final String STORAGE_FILE = "clojure-namespaces.dat";
+
+  private final File myStorage;
+  private final Map<String, Node> myNodes = new HashMap<String, Node>();
+  private final Set<String> myPendingFiles = new HashSet<String>();
+  private Map<String, String> myFilesByNamespace;
+  private boolean myLoaded;
+
+  public static class Node {
+    public final String namespace;
+    public final Set<String> dependencies;
+    public final boolean genClass;
+    public final long timestamp;
+    public final long length;
+
+    public Node(String namespace, Set<String> dependencies, boolean genClass, long timestamp, long length) {
+      this.namespace = namespace;
+      this.dependencies = dependencies;
+      this.genClass = genClass;
+      this.timestamp = timestamp;
+      this.length = length;
+    }
+
+    public boolean isUpToDate(File file) {
+      return timestamp == file.lastModified() && length == file.length();
+    }
+  }
+
+  private ClojureNamespaceGraph(File storage) {
+    myStorage = storage;
+  }
+
+  public static ClojureNamespaceGraph load(File dataRoot) {
+    ClojureNamespaceGraph graph = new ClojureNamespaceGraph(new File(dataRoot, STORAGE_FILE));
+    if (!graph.myStorage.exists()) return graph;
+    try {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(graph.myStorage)));
+      try {
+        if (input.readInt() != VERSION) return graph;
+        int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+          String path = input.readUTF();
+          String namespace = input.readUTF();
+          int dependencyCount = input.readInt();
+          Set<String> dependencies = new LinkedHashSet<String>();
+          for (int j = 0; j < dependencyCount; j++) {
+            dependencies.add(input.readUTF());
+          }
+          boolean genClass = input.readBoolean();
+          long timestamp = input.readLong();
+          long length = input.readLong();
+          graph.myNodes.put(path, new Node(namespace, dependencies, genClass, timestamp, length));
+        }
+        int pendingCount = input.readInt();
+        for (int i = 0; i < pendingCount; i++) {
+          graph.myPendingFiles.add(input.readUTF());
+        }
+        graph.myLoaded = true;
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      // broken storage means all files are treated as new ones
+      graph.myNodes.clear();
+      graph.myPendingFiles.clear();
+    }
+    return graph;
+  }
+
+  public void save() throws IOException {
+    FileUtil.createParentDirs(myStorage);
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myStorage)));
+    try {
+      output.writeInt(VERSION);
+      output.writeInt(myNodes.size());
+      for (Map.Entry<String, Node> entry : myNodes.entrySet()) {
+        Node node = entry.getValue();
+        output.writeUTF(entry.getKey());
+        output.writeUTF(node.namespace);
+        output.writeInt(node.dependencies.size());
+        for (String dependency : node.dependencies) {
+          output.writeUTF(dependency);
+        }
+        output.writeBoolean(node.genClass);
+        output.writeLong(node.timestamp);
+        output.writeLong(node.length);
+      }
+      output.writeInt(myPendingFiles.size());
+      for (String path : myPendingFiles) {
+        output.writeUTF(path);
+      }
+    }
+    finally {
+      output.close();
+    }
+  }
+
+  /**
+   * @return false if the graph is new, i.e. there was no storage, or it was written by another version or broken.
+   *         Such a graph knows nothing about files which weren't changed.
+   */
+  public boolean isLoaded() {
+    return myLoaded;
+  }
+
+  @Nullable
+  public Node get(String path) {
+    return myNodes.get(path);
+  }
+
+  public void put(String path, Node node) {
+    myNodes.put(path, node);
+    myFilesByNamespace = null;
+  }
+
+  @Nullable
+  public Node remove(String path) {
+    myFilesByNamespace = null;
+    return myNodes.remove(path);
+  }
+
+  /**
+   * @return paths of files which failed to compile in the last build
+   */
+  public Set<String> getPendingFiles() {
+    return Collections.unmodifiableSet(myPendingFiles);
+  }
+
+  public void setPendingFiles(Collection<String> paths) {
+    myPendingFiles.clear();
+    myPendingFiles.addAll(paths);
+  }
+
+  /**
+   * @return paths of files declaring the given namespaces or depending on them, directly or transitively
+   */
+  public Set<String> getAffectedFiles(Collection<String> changedNamespaces) {
+    Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+    for (Map.Entry<String, Node> entry : myNodes.entrySet()) {
+      for (String dependency : entry.getValue().dependencies) {
+        List<String> list = dependents.get(dependency);
+        if (list == null) {
+          list = new ArrayList<String>();
+          dependents.put(dependency, list);
+        }
+        list.add(entry.getKey());
+      }
+    }
+
+    Set<String> affected = new HashSet<String>();
+    Set<String> visitedNamespaces = new HashSet<String>();
+    LinkedList<String> queue = new LinkedList<String>(changedNamespaces);
+    while (!queue.isEmpty()) {
+      String namespace = queue.removeFirst();
+      if (!visitedNamespaces.add(namespace)) continue;
+      String declaringFile = getFilesByNamespace().get(namespace);
+      if (declaringFile != null) affected.add(declaringFile);
+      List<String> list = dependents.get(namespace);
+      if (list == null) continue;
+      for (String path : list) {
+        affected.add(path);
+        queue.add(myNodes.get(path).namespace);
+      }
+    }
+    return affected;
+  }
+
+  /**
+   * @return the given files ordered so that every file follows the files of the namespaces it depends on
+   */
+  public List<String> sortTopologically(Collection<String> paths) {
+    Set<String> toSort = new HashSet<String>(paths);
+    List<String> result = new ArrayList<String>(paths.size());
+    Set<String> visited = new HashSet<String>();
+    for (String path : paths) {
+      visit(path, toSort, visited, result);
+    }
+    return result;
+  }
+
+  private void visit(String path, Set<String> toSort, Set<String> visited, List<String> result) {
+    if (!visited.add(path)) return;
+    Node node = myNodes.get(path);
+    if (node != null) {
+      for (String dependency : node.dependencies) {
+        String dependencyPath = getFilesByNamespace().get(dependency);
+        if (dependencyPath != null) visit(dependencyPath, toSort, visited, result);
+      }
+    }
+    if (toSort.contains(path)) result.add(path);
+  }
+
+  /**
+   * Splits topologically sorted files into at most <code>groupCount</code> groups which don't depend on each other,
+   * so that they can be compiled independently. Files related through project namespaces always share a group,
+   * and the original order is kept inside every group.
+   */
+  public List<List<String>> partition(List<String> sortedPaths, int groupCount) {
+    Map<String, String> parents = new HashMap<String, String>();
+    for (Node node : myNodes.values()) {
+      for (String dependency : node.dependencies) {
+        if (getFilesByNamespace().containsKey(dependency)) {
+          parents.put(findRoot(parents, node.namespace), findRoot(parents, dependency));
+        }
+      }
+    }
+
+    Map<String, List<String>> components = new LinkedHashMap<String, List<String>>();
+    for (String path : sortedPaths) {
+      Node node = myNodes.get(path);
+      String root = findRoot(parents, node != null ? node.namespace : path);
+      List<String> component = components.get(root);
+      if (component == null) {
+        component = new ArrayList<String>();
+        components.put(root, component);
+      }
+      component.add(path);
+    }
+
+    List<List<String>> sortedComponents = new ArrayList<List<String>>(components.values());
+    Collections.sort(sortedComponents, new Comparator<List<String>>() {
+      public int compare(List<String> o1, List<String> o2) {
+        return o2.size() - o1.size();
+      }
+    });
+    List<List<String>> groups = new ArrayList<List<String>>();
+    for (List<String> component : sortedComponents) {
+      if (groups.size() < groupCount) {
+        groups.add(new ArrayList<String>(component));
+        continue;
+      }
+      List<String> smallest = groups.get(0);
+      for (List<String> group : groups) {
+        if (group.size() < smallest.size()) smallest = group;
+      }
+      smallest.addAll(component);
+    }
+
+    //merged components are appended, so the order of files is restored
+    final Map<String, Integer> indices = new HashMap<String, Integer>();
+    for (int i = 0; i < sortedPaths.size(); i++) {
+      indices.put(sortedPaths.get(i), i);
+    }
+    for (List<String> group : groups) {
+      Collections.sort(group, new Comparator<String>() {
+        public int compare(String o1, String o2) {
+          return indices.get(o1) - indices.get(o2);
+        }
+      });
+    }
+    return groups;
+  }
+
+  private static String findRoot(Map<String, String> parents, String namespace) {
+    String root = namespace;
+    String parent;
+    while ((parent = parents.get(root)) != null && !parent.equals(root)) {
+      root = parent;
+    }
+    if (!root.equals(namespace)) parents.put(namespace, root);
+    return root;
+  }
+
+  private Map<String, String> getFilesByNamespace() {
+    if (myFilesByNamespace == null) {
+      myFilesByNamespace = new HashMap<String, String>();
+      for (Map.Entry<String, Node> entry : myNodes.entrySet()) {
+        myFilesByNamespace.put(entry.getValue().namespace, entry.getKey());
+      }
+    }
+    return myFilesByNamespace;
+  }
+}
@@ -0,0 +1,411 @@
+package org.jetbrains.jps.clojure.build;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Name, <code>:require</code>/<code>:use</code> dependencies and <code>:gen-class</code> flag of the first
+ * top-level <code>ns</code> form of a Clojure file, read without the Clojure runtime.
+ * <p/>
+ * The reader only understands as much syntax as is needed to find form boundaries: comments, strings,
+ * character literals, dispatch macros and metadata. Everything that is not a list, a vector or a symbol is skipped,
+ * so <code>:gen-class</code> in comments, strings or outside of the <code>ns</code> form is not taken into account.
+ */
+public class ClojureNamespaceHeader {
+  private static final Object OTHER = new Object();
+  private static final Object COMMENT = new Object();
+  private static final int BUFFER_SIZE = 1024;
+
+  private final String myName;
+  private final Set<String> myDependencies;
+  private final boolean myGenClass;
+
+  public ClojureNamespaceHeader(String name, Set<String> dependencies, boolean genClass) {
+    myName = name;
+    myDependencies = dependencies;
+    myGenClass = genClass;
+  }
+
+  public String getName() {
+    return myName;
+  }
+
+  public Set<String> getDependencies() {
+    return myDependencies;
+  }
+
+  public boolean isGenClass() {
+    return myGenClass;
+  }
+
+  /**
+   * Reads the UTF-8 file through a small buffer up to the end of its first top-level <code>ns</code> form.
+   * Reading stops at the first top-level form which is neither a comment nor an <code>ns</code> form.
+   */
+  @Nullable
+  public static ClojureNamespaceHeader parse(File file) throws IOException {
+    Reader input = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"), BUFFER_SIZE);
+    try {
+      return parse(input);
+    }
+    finally {
+      input.close();
+    }
+  }
+
+  @Nullable
+  public static ClojureNamespaceHeader parse(Reader input) throws IOException {
+    FormReader reader = new FormReader(input);
+    while (!reader.atEnd()) {
+      Object form = reader.readTopLevel();
+      if (form instanceof Form) {
+        return fromNsForm((Form) form);
+      }
+      if (form != COMMENT) break;
+    }
+    return null;
+  }
+
+  @Nullable
+  private static ClojureNamespaceHeader fromNsForm(Form ns) {
+    if (ns.items.size() < 2 || !(ns.items.get(1) instanceof String)) return null;
+    String name = (String) ns.items.get(1);
+    Set<String> dependencies = new LinkedHashSet<String>();
+    boolean genClass = false;
+    for (int i = 2; i < ns.items.size(); i++) {
+      Object item = ns.items.get(i);
+      if (!(item instanceof Form)) continue;
+      Form directive = (Form) item;
+      String head = directive.head();
+      if (":require".equals(head) || ":use".equals(head)) {
+        for (int j = 1; j < directive.items.size(); j++) {
+          collectLibs(directive.items.get(j), dependencies);
+        }
+      } else if (":gen-class".equals(head)) {
+        genClass = true;
+      }
+    }
+    return new ClojureNamespaceHeader(name, dependencies, genClass);
+  }
+
+  private static void collectLibs(Object spec, Set<String> result) {
+    if (spec instanceof String) {
+      if (!isKeyword((String) spec)) result.add((String) spec);
+      return;
+    }
+    if (!(spec instanceof Form)) return;
+    Form form = (Form) spec;
+    String lib = form.head();
+    if (lib == null || isKeyword(lib)) return;
+    if (form.items.size() == 1 || form.items.get(1) instanceof String && isKeyword((String) form.items.get(1))) {
+      result.add(lib);
+      return;
+    }
+    // prefix list: (prefix lib1 [lib2 :as l])
+    for (int i = 1; i < form.items.size(); i++) {
+      Object suffix = form.items.get(i);
+      if (suffix instanceof String && !isKeyword((String) suffix)) {
+        result.add(lib + "." + suffix);
+      } else if (suffix instanceof Form && ((Form) suffix).head() != null) {
+        result.add(lib + "." + ((Form) suffix).head());
+      }
+    }
+  }
+
+  private static boolean isKeyword(String token) {
+    return token.startsWith(":");
+  }
+
+  /**
+   * List or vector with its symbols, nested lists and vectors; other elements are represented by {@link #OTHER}.
+   */
+  private static class Form {
+    private final List<Object> items = new ArrayList<Object>();
+
+    @Nullable
+    String head() {
+      return !items.isEmpty() && items.get(0) instanceof String ? (String) items.get(0) : null;
+    }
+  }
+
+  /**
+   * Follows the token rules of <code>clojure.flex</code> for comments, strings, characters and symbols.
+   * Forms are only materialized while reading an <code>ns</code> form; everything else is skipped without recursion,
+   * so deeply nested forms don't exhaust the stack.
+   */
+  private static class FormReader {
+    private static final int NONE = -2;
+
+    private final Reader myInput;
+    private int myLookahead = NONE;
+
+    FormReader(Reader input) {
+      myInput = input;
+    }
+
+    private int peek() throws IOException {
+      if (myLookahead == NONE) myLookahead = myInput.read();
+      return myLookahead;
+    }
+
+    private int next() throws IOException {
+      int c = peek();
+      myLookahead = NONE;
+      return c;
+    }
+
+    boolean atEnd() throws IOException {
+      skipWhitespaceAndComments();
+      return peek() == -1;
+    }
+
+    /**
+     * @return {@link Form} for an <code>ns</code> form, {@link #COMMENT} for a <code>comment</code> form
+     *         or a discarded one, {@link #OTHER} for any other form, which is not read
+     */
+    Object readTopLevel() throws IOException {
+      skipWhitespaceAndComments();
+      int c = peek();
+      if (c == '#') {
+        next();
+        if (peek() != '_') return OTHER;
+        next();
+        skip(0);
+        return COMMENT;
+      }
+      if (c != '(') return OTHER;
+      next();
+      skipWhitespaceAndComments();
+      if (isClosing(peek())) {
+        next();
+        return OTHER;
+      }
+      Object head = read();
+      if ("ns".equals(head) || "clojure.core/ns".equals(head)) {
+        Form form = readItems();
+        form.items.add(0, head);
+        return form;
+      }
+      if ("comment".equals(head) || "clojure.core/comment".equals(head)) {
+        skip(1);
+        return COMMENT;
+      }
+      return OTHER;
+    }
+
+    /**
+     * Materializes lists, vectors and symbols of the <code>ns</code> form
+     *
+     * @return next form, or null at the end of input or of the enclosing collection
+     */
+    @Nullable
+    private Object read() throws IOException {
+      while (true) {
+        skipWhitespaceAndComments();
+        int c = next();
+        switch (c) {
+          case -1:
+          case ')':
+          case ']':
+          case '}':
+            return null;
+          case '(':
+          case '[':
+            return readItems();
+          case '{':
+            skip(1);
+            return OTHER;
+          case '"':
+            skipString();
+            return OTHER;
+          case '\\':
+            next();
+            skipToken(null);
+            return OTHER;
+          case '^':
+            skip(0); // metadata belongs to the next form
+            continue;
+          case '~':
+            if (peek() == '@') next();
+            return read();
+          case '\'':
+          case '`':
+          case '@':
+            return read();
+          case '#':
+            int dispatch = peek();
+            if (dispatch == '_') {
+              next();
+              skip(0);
+              continue;
+            }
+            if (dispatch == '!') {
+              skipLine();
+              continue;
+            }
+            if (dispatch == '"') {
+              next();
+              skipString();
+              return OTHER;
+            }
+            if (dispatch == '{' || dispatch == '(') {
+              next();
+              skip(1);
+              return OTHER;
+            }
+            if (dispatch == '\'' || dispatch == '^' || dispatch == '=') {
+              next();
+            }
+            skip(0);
+            return OTHER;
+          default:
+            StringBuilder token = new StringBuilder();
+            token.append((char) c);
+            skipToken(token);
+            return token.toString();
+        }
+      }
+    }
+
+    private Form readItems() throws IOException {
+      Form form = new Form();
+      while (true) {
+        skipWhitespaceAndComments();
+        int c = peek();
+        if (c == -1) break;
+        if (isClosing(c)) {
+          next();
+          break;
+        }
+        Object item = read();
+        if (item != null) form.items.add(item);
+      }
+      return form;
+    }
+
+    /**
+     * Skips forms by counting open collections, with the same boundaries {@link #read()} finds.
+     *
+     * @param depth 0 to skip the next form, 1 to skip the rest of a collection whose opening delimiter is read
+     */
+    private void skip(int depth) throws IOException {
+      // forms to skip at the initial level, metadata and discarded forms are followed by one more
+      int forms = 1;
+      while (true) {
+        skipWhitespaceAndComments();
+        int c = next();
+        switch (c) {
+          case -1:
+            return;
+          case '(':
+          case '[':
+          case '{':
+            depth++;
+            continue;
+          case ')':
+          case ']':
+          case '}':
+            if (depth == 0) return;
+            depth--;
+            break;
+          case '"':
+            skipString();
+            break;
+          case '\\':
+            next();
+            skipToken(null);
+            break;
+          case '^':
+            if (depth == 0) forms++;
+            continue;
+          case '~':
+            if (peek() == '@') next();
+            continue;
+          case '\'':
+          case '`':
+          case '@':
+            continue;
+          case '#':
+            int dispatch = peek();
+            if (dispatch == '!') {
+              skipLine();
+              continue;
+            }
+            if (dispatch == '"') {
+              next();
+              skipString();
+              break;
+            }
+            if (dispatch == '{' || dispatch == '(') {
+              next();
+              depth++;
+              continue;
+            }
+            if (dispatch == '_' || dispatch == '^') {
+              if (depth == 0) forms++;
+            }
+            if (dispatch == '_' || dispatch == '\'' || dispatch == '^' || dispatch == '=') {
+              next();
+            }
+            continue;
+          default:
+            skipToken(null);
+            break;
+        }
+        if (depth == 0 && --forms == 0) return;
+      }
+    }
+
+    private void skipWhitespaceAndComments() throws IOException {
+      while (true) {
+        int c = peek();
+        if (c == ';') {
+          skipLine();
+        } else if (c != -1 && (Character.isWhitespace(c) || c == ',')) {
+          next();
+        } else {
+          return;
+        }
+      }
+    }
+
+    private void skipLine() throws IOException {
+      int c;
+      do {
+        c = next();
+      } while (c != -1 && c != '\n');
+    }
+
+    /**
+     * Skips the rest of a string literal whose opening quote is already read.
+     */
+    private void skipString() throws IOException {
+      while (true) {
+        int c = next();
+        if (c == -1 || c == '"') return;
+        if (c == '\\') next();
+      }
+    }
+
+    private void skipToken(@Nullable StringBuilder token) throws IOException {
+      while (true) {
+        int c = peek();
+        if (c == -1 || Character.isWhitespace(c) || c == ',' || c == '(' || c == ')' || c == '[' || c == ']' ||
+            c == '{' || c == '}' || c == '"' || c == ';' || c == '^' || c == '\\' || c == '@' || c == '`' || c == '~') {
+          return;
+        }
+        next();
+        if (token != null) token.append((char) c);
+      }
+    }
+
+    private static boolean isClosing(int c) {
+      return c == ')' || c == ']' || c == '}';
+    }
+  }
+}
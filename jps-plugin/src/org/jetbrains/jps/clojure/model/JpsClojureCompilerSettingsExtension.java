@@ -13,4 +13,8 @@ public interface JpsClojureCompilerSettingsExtension extends JpsElement {
   boolean isClojureBefore();
 
   boolean isCopyCljSources();
+
+  boolean isUseCompileServer();
+
+  int getCompilerWorkers();
 }
@@ -37,4 +37,12 @@ public class JpsClojureCompilerSettingsExtensionImpl extends JpsElementBase<JpsC
   public boolean isCopyCljSources() {
     return myState.COPY_CLJ_SOURCES;
   }
+
+  public boolean isUseCompileServer() {
+    return myState.USE_COMPILE_SERVER;
+  }
+
+  public int getCompilerWorkers() {
+    return myState.COMPILER_WORKERS;
+  }
 }
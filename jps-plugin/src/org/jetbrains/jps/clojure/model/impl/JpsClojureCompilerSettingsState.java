@@ -8,4 +8,6 @@ public class JpsClojureCompilerSettingsState {
   public boolean COMPILE_CLOJURE = false;
   public boolean CLOJURE_BEFORE = true;
   public boolean COPY_CLJ_SOURCES = false;
+  public boolean USE_COMPILE_SERVER = false;
+  public int COMPILER_WORKERS = 1;
 }
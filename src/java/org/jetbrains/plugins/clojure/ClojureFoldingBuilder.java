@@ -7,6 +7,7 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.tree.IElementType;
 import org.jetbrains.plugins.clojure.parser.ClojureElementTypes;
+import org.jetbrains.plugins.clojure.parser.ClojureLightweightMode;
 import static org.jetbrains.plugins.clojure.parser.ClojureElementTypes.*;
 import org.jetbrains.plugins.clojure.psi.api.ClList;
 import org.jetbrains.plugins.clojure.psi.api.ClojureFile;
@@ -47,6 +48,7 @@ public class ClojureFoldingBuilder implements FoldingBuilder {
   }
 
   public FoldingDescriptor[] buildFoldRegions(ASTNode node, Document document) {
+    if (ClojureLightweightMode.isEnabled(document.getTextLength())) return FoldingDescriptor.EMPTY;
     touchTree(node);
     List<FoldingDescriptor> descriptors = new ArrayList<FoldingDescriptor>();
     appendDescriptors(node, descriptors);
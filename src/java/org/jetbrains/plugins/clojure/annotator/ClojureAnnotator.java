@@ -9,6 +9,7 @@ import com.intellij.util.containers.HashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.clojure.ClojureBundle;
 import org.jetbrains.plugins.clojure.highlighter.ClojureSyntaxHighlighter;
+import org.jetbrains.plugins.clojure.parser.ClojureLightweightMode;
 import org.jetbrains.plugins.clojure.psi.api.ClKeyword;
 import org.jetbrains.plugins.clojure.psi.api.ClList;
 import org.jetbrains.plugins.clojure.psi.api.symbols.ClSymbol;
@@ -28,6 +29,7 @@ public class ClojureAnnotator implements Annotator {
   }
 
   public void annotate(@NotNull PsiElement element, @NotNull AnnotationHolder holder) {
+    if (ClojureLightweightMode.isEnabled(element)) return;
     if (element instanceof ClList) {
       annotateList((ClList) element, holder);
     }
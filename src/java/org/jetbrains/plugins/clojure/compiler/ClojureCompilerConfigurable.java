@@ -22,12 +22,15 @@ public class ClojureCompilerConfigurable implements Configurable {
   private JCheckBox myClojureBeforeCheckBox;
   private JCheckBox myCompileTaggedCb;
   private JCheckBox myCopySourcesCb;
+  private JCheckBox myCompileServerCb;
+  private JSpinner myWorkersSpinner;
   private ClojureCompilerSettings mySettings;
   private Project myProject;
 
   public ClojureCompilerConfigurable(ClojureCompilerSettings settings, Project project) {
     myProject = project;
     mySettings = settings;
+    myWorkersSpinner.setModel(new SpinnerNumberModel(1, 1, Runtime.getRuntime().availableProcessors() * 2, 1));
   }
 
   @Nls
@@ -50,7 +53,9 @@ public class ClojureCompilerConfigurable implements Configurable {
   public boolean isModified() {
     return mySettings.getState().CLOJURE_BEFORE != myClojureBeforeCheckBox.isSelected() ||
         mySettings.getState().COMPILE_CLOJURE != myCompileTaggedCb.isSelected() ||
-        mySettings.getState().COPY_CLJ_SOURCES != myCopySourcesCb.isSelected();
+        mySettings.getState().COPY_CLJ_SOURCES != myCopySourcesCb.isSelected() ||
+        mySettings.getState().USE_COMPILE_SERVER != myCompileServerCb.isSelected() ||
+        mySettings.getState().COMPILER_WORKERS != ((Integer) myWorkersSpinner.getValue()).intValue();
   }
 
   public void apply() throws ConfigurationException {
@@ -71,12 +76,16 @@ public class ClojureCompilerConfigurable implements Configurable {
     mySettings.getState().CLOJURE_BEFORE = myClojureBeforeCheckBox.isSelected();
     mySettings.getState().COMPILE_CLOJURE = myCompileTaggedCb.isSelected();
     mySettings.getState().COPY_CLJ_SOURCES = myCopySourcesCb.isSelected();
+    mySettings.getState().USE_COMPILE_SERVER = myCompileServerCb.isSelected();
+    mySettings.getState().COMPILER_WORKERS = (Integer) myWorkersSpinner.getValue();
   }
 
   public void reset() {
     myClojureBeforeCheckBox.setSelected(mySettings.getState().CLOJURE_BEFORE);
     myCompileTaggedCb.setSelected(mySettings.getState().COMPILE_CLOJURE);
     myCopySourcesCb.setSelected(mySettings.getState().COPY_CLJ_SOURCES);
+    myCompileServerCb.setSelected(mySettings.getState().USE_COMPILE_SERVER);
+    myWorkersSpinner.setValue(Math.max(1, mySettings.getState().COMPILER_WORKERS));
   }
 
   public void disposeUIResources() {
@@ -32,7 +32,7 @@ import com.intellij.util.Alarm;
 import com.intellij.util.Processor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.clojure.parser.ClojureElementTypes;
-import org.jetbrains.plugins.clojure.psi.api.ClList;
+import org.jetbrains.plugins.clojure.parser.ClojureLightweightMode;
 import org.jetbrains.plugins.clojure.settings.ClojureProjectSettings;
 
 /**
@@ -40,11 +40,12 @@ import org.jetbrains.plugins.clojure.settings.ClojureProjectSettings;
  */
 public class ClojureBraceHighlighter implements Annotator {
   public void annotate(@NotNull PsiElement psiElement, @NotNull AnnotationHolder annotationHolder) {
+    if (ClojureLightweightMode.isEnabled(psiElement)) return;
     if (psiElement instanceof LeafPsiElement &&
         ClojureProjectSettings.getInstance(psiElement.getProject()).coloredParentheses) {
       IElementType type = ((LeafPsiElement) psiElement).getElementType();
       if (type == ClojureElementTypes.LEFT_PAREN || type == ClojureElementTypes.RIGHT_PAREN) {
-        int level = getLevel(psiElement);
+        int level = ClojureBraceLevels.getLevel(psiElement);
         if (level >= 0) {
           final EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
           TextAttributes attrs = ClojureBraceAttributes.getBraceAttributes(level, scheme.getDefaultBackground());
@@ -53,17 +54,4 @@ public class ClojureBraceHighlighter implements Annotator {
       }
     }
   }
-
-  private static int getLevel(PsiElement psiElement) {
-    int level = -1;
-    PsiElement eachParent = psiElement;
-    while (eachParent != null) {
-      if (eachParent instanceof ClList) {
-        level++;
-      }
-      eachParent = eachParent.getParent();
-    }
-    return level;
-  }
-
 }
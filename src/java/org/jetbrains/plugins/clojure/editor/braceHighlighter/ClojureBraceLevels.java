@@ -0,0 +1,123 @@
+package org.jetbrains.plugins.clojure.editor.braceHighlighter;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.source.tree.CompositeElement;
+import com.intellij.psi.tree.TokenSet;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jetbrains.plugins.clojure.parser.ClojureElementTypes.*;
+
+/**
+ * Levels of parentheses for rainbow highlighting, i.e. numbers of enclosing lists.
+ * <p/>
+ * Levels of a file are computed in a single walk over its tree and kept until the file is modified. After a change
+ * only top-level forms modified by the reparse are walked again, the others keep their levels in their nodes.
+ */
+class ClojureBraceLevels {
+  private static final Key<ClojureBraceLevels> FILE_LEVELS = Key.create("clojure.brace.levels");
+  private static final Key<FormLevels> FORM_LEVELS = Key.create("clojure.brace.form.levels");
+
+  /**
+   * Types of {@link org.jetbrains.plugins.clojure.psi.api.ClList} elements
+   */
+  private static final TokenSet LISTS = TokenSet.create(LIST, DEF, DEFMETHOD, NS, IN_NS, CREATE_NS);
+  private static final TokenSet PARENS = TokenSet.create(LEFT_PAREN, RIGHT_PAREN);
+
+  private final long myModificationStamp;
+  private final TObjectIntHashMap<ASTNode> myLevels = new TObjectIntHashMap<ASTNode>();
+
+  private ClojureBraceLevels(PsiFile file) {
+    myModificationStamp = file.getModificationStamp();
+    for (ASTNode form = file.getNode().getFirstChildNode(); form != null; form = form.getTreeNext()) {
+      if (form instanceof CompositeElement) {
+        final FormLevels levels = getFormLevels((CompositeElement) form);
+        for (int i = 0; i < levels.myBraces.length; i++) {
+          myLevels.put(levels.myBraces[i], levels.myLevels[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return level of a parenthesis, or -1 if it's not in a list
+   */
+  static int getLevel(@NotNull PsiElement brace) {
+    final PsiFile file = brace.getContainingFile();
+    if (file == null) return -1;
+    ClojureBraceLevels levels = file.getUserData(FILE_LEVELS);
+    if (levels == null || levels.myModificationStamp != file.getModificationStamp()) {
+      levels = new ClojureBraceLevels(file);
+      file.putUserData(FILE_LEVELS, levels);
+    }
+    final ASTNode node = brace.getNode();
+    return levels.myLevels.containsKey(node) ? levels.myLevels.get(node) : -1;
+  }
+
+  /**
+   * Parentheses of a top-level form and their levels
+   */
+  private static class FormLevels {
+    private final int myModificationCount;
+    private final ASTNode[] myBraces;
+    private final int[] myLevels;
+
+    private FormLevels(int modificationCount, ASTNode[] braces, int[] levels) {
+      myModificationCount = modificationCount;
+      myBraces = braces;
+      myLevels = levels;
+    }
+  }
+
+  private static FormLevels getFormLevels(CompositeElement form) {
+    FormLevels levels = form.getUserData(FORM_LEVELS);
+    if (levels == null || levels.myModificationCount != form.getModificationCount()) {
+      levels = computeFormLevels(form);
+      form.putUserData(FORM_LEVELS, levels);
+    }
+    return levels;
+  }
+
+  /**
+   * Walks the form without recursion, counting lists entered and left
+   */
+  private static FormLevels computeFormLevels(CompositeElement form) {
+    final List<ASTNode> braces = new ArrayList<ASTNode>();
+    final TIntArrayList levels = new TIntArrayList();
+    int level = -1;
+    ASTNode node = form;
+    while (node != null) {
+      if (LISTS.contains(node.getElementType())) {
+        level++;
+      } else if (PARENS.contains(node.getElementType())) {
+        braces.add(node);
+        levels.add(level);
+      }
+      if (node.getFirstChildNode() != null) {
+        node = node.getFirstChildNode();
+        continue;
+      }
+      while (node != null) {
+        if (LISTS.contains(node.getElementType())) {
+          level--;
+        }
+        if (node == form) {
+          node = null;
+        } else if (node.getTreeNext() != null) {
+          node = node.getTreeNext();
+          break;
+        } else {
+          node = node.getTreeParent();
+        }
+      }
+    }
+    return new FormLevels(form.getModificationCount(), braces.toArray(new ASTNode[braces.size()]), levels.toNativeArray());
+  }
+}
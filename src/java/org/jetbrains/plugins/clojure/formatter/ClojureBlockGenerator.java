@@ -6,15 +6,13 @@ import com.intellij.formatting.Indent;
 import com.intellij.formatting.Wrap;
 import com.intellij.lang.ASTNode;
 import com.intellij.psi.codeStyle.CodeStyleSettings;
-import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiComment;
+import com.intellij.psi.impl.source.tree.LeafElement;
+import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.tree.TokenSet;
-import com.intellij.psi.impl.source.tree.LeafPsiElement;
 import org.jetbrains.plugins.clojure.formatter.processors.ClojureIndentProcessor;
 import org.jetbrains.plugins.clojure.formatter.codeStyle.ClojureCodeStyleSettings;
-import org.jetbrains.plugins.clojure.psi.api.*;
-import org.jetbrains.plugins.clojure.psi.api.defs.ClDef;
-import org.jetbrains.plugins.clojure.psi.api.symbols.ClSymbol;
+import org.jetbrains.plugins.clojure.parser.ClojureElementTypes;
+import org.jetbrains.plugins.clojure.psi.api.ClList;
 import org.jetbrains.plugins.clojure.lexer.ClojureTokenTypes;
 import org.jetbrains.plugins.clojure.psi.util.ClojurePsiCheckers;
 
@@ -22,103 +20,111 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Sub-blocks of Clojure forms. Children are classified by their element types only, as getting the text
+ * or the range of a composite node walks its whole subtree.
+ *
  * @author ilyas
  */
 public class ClojureBlockGenerator {
 
-  private static ASTNode myNode;
-  private static Alignment myAlignment;
-  private static Wrap myWrap;
-  private static CodeStyleSettings mySettings;
-  private static ClojureBlock myBlock;
   private static final TokenSet RIGHT_BRACES = TokenSet.create(ClojureTokenTypes.RIGHT_CURLY, ClojureTokenTypes.RIGHT_SQUARE);
+  private static final TokenSet BLANKS = TokenSet.create(ClojureTokenTypes.WHITESPACE, ClojureTokenTypes.EOL, ClojureTokenTypes.EOF);
+  private static final TokenSet ALIGNED_COLLECTIONS = TokenSet.create(ClojureElementTypes.VECTOR, ClojureElementTypes.MAP);
+  /**
+   * {@link ClList} types except definitions
+   */
+  private static final TokenSet ALIGNED_LISTS = TokenSet.create(ClojureElementTypes.LIST,
+      ClojureElementTypes.NS, ClojureElementTypes.IN_NS, ClojureElementTypes.CREATE_NS);
+  private static final TokenSet APPLICATION_STARTS = TokenSet.create(ClojureElementTypes.SYMBOL, ClojureElementTypes.IMPLICIT_ARG);
 
   public static List<Block> generateSubBlocks(ASTNode node, Alignment alignment, Wrap wrap, CodeStyleSettings settings, ClojureBlock block) {
-    myNode = node;
-    myWrap = wrap;
-    mySettings = settings;
-    myAlignment = alignment;
-    myBlock = block;
-
-    PsiElement blockPsi = myBlock.getNode().getPsi();
-
     final ArrayList<Block> subBlocks = new ArrayList<Block>();
-    ASTNode children[] = myNode.getChildren(null);
-    ASTNode prevChildNode = null;
+    final ASTNode children[] = node.getChildren(null);
     final ClojureCodeStyleSettings clSettings = block.getSettings().getCustomSettings(ClojureCodeStyleSettings.class);
+    final ListHead head = new ListHead(node, children, clSettings);
 
-
+    ASTNode prevChildNode = null;
     Alignment childAlignment = null;
-    for (ASTNode childNode : children) {
+    for (int i = 0; i < children.length; i++) {
+      final ASTNode childNode = children[i];
       if (canBeCorrectBlock(childNode)) {
-
-        final PsiElement childPsi = childNode.getPsi();
-        final boolean mustAlign = mustAlign(blockPsi, childPsi, clSettings);
-        if (mustAlign && childAlignment == null ) {
+        if (childAlignment == null && mustAlign(node, children, i, head)) {
           childAlignment = Alignment.createAlignment();
         }
 
-        final Indent indent = ClojureIndentProcessor.getChildIndent(myBlock, prevChildNode, childNode);
+        final Indent indent = ClojureIndentProcessor.getChildIndent(block, prevChildNode, childNode);
         subBlocks.add(new ClojureBlock(childNode,
             childAlignment == null ? Alignment.createAlignment() : childAlignment,
-            indent, myWrap, mySettings));
+            indent, wrap, settings));
         prevChildNode = childNode;
-
       }
     }
     return subBlocks;
   }
 
-  public static boolean mustAlign(PsiElement blockPsi, PsiElement child, ClojureCodeStyleSettings settings) {
+  /**
+   * First two non-leaf children of a list, found once for all its children
+   */
+  private static class ListHead {
+    private final int myFirst;
+    private final int mySecond;
+    private final boolean myAlignForms;
+
+    private ListHead(ASTNode node, ASTNode[] children, ClojureCodeStyleSettings settings) {
+      int first = -1;
+      int second = -1;
+      if (ALIGNED_LISTS.contains(node.getElementType())) {
+        for (int i = 0; i < children.length && second < 0; i++) {
+          if (!(children[i] instanceof LeafElement)) {
+            if (first < 0) {
+              first = i;
+            } else {
+              second = i;
+            }
+          }
+        }
+      }
+      myFirst = first;
+      mySecond = second;
+      myAlignForms = first >= 0 && (settings.ALIGN_CLOJURE_FORMS || ClojurePsiCheckers.isImportMember((ClList) node.getPsi()));
+    }
+  }
 
-    if (blockPsi instanceof ClVector || blockPsi instanceof ClMap) {
-      return !(child instanceof LeafPsiElement) || RIGHT_BRACES.contains(child.getNode().getElementType()) ||
-          (child instanceof PsiComment);
+  private static boolean mustAlign(ASTNode node, ASTNode[] children, int index, ListHead head) {
+    final IElementType type = node.getElementType();
+    final ASTNode child = children[index];
+
+    if (ALIGNED_COLLECTIONS.contains(type)) {
+      return !(child instanceof LeafElement) || RIGHT_BRACES.contains(child.getElementType()) ||
+          ClojureTokenTypes.COMMENTS.contains(child.getElementType());
     }
 
-    if (blockPsi instanceof ClList &&
-        !(blockPsi instanceof ClDef)) {
-      final ClList list = (ClList) blockPsi;
-      PsiElement first = list.getFirstNonLeafElement();
-
-      if (settings.ALIGN_CLOJURE_FORMS || ClojurePsiCheckers.isImportMember(list)) {
-        if (first == child && !applicationStart(first)) return true;
-        if (first != null &&
-            !applicationStart(first) &&
-            first.getTextRange().getEndOffset() <= child.getTextRange().getStartOffset()) {
-          return true;
-        }
-        final PsiElement second = list.getSecondNonLeafElement();
-        if (second != null && child != null &&
-            second.getTextRange().getEndOffset() <= child.getTextRange().getStartOffset()) {
-          return true;
-        }
+    if (head.myFirst >= 0) {
+      final IElementType firstType = children[head.myFirst].getElementType();
+      if (head.myAlignForms) {
+        if (!APPLICATION_STARTS.contains(firstType) && index >= head.myFirst) return true;
+        if (head.mySecond >= 0 && index > head.mySecond) return true;
       }
       // CLJ-98
-      if (first instanceof ClKeyword && child != null &&
-          first.getTextRange().getEndOffset() <= child.getTextRange().getStartOffset()) {
+      if (firstType == ClojureElementTypes.KEYWORD && index > head.myFirst) {
         return true;
       }
     }
 
-
-    if (blockPsi instanceof ClLiteral) {
-      ASTNode node = blockPsi.getNode();
-      assert node != null;
-      ASTNode[] elements = node.getChildren(null);
-      if (elements.length > 0 && elements[0].getElementType() == ClojureTokenTypes.STRING_LITERAL) {
+    if (type == ClojureElementTypes.LITERAL) {
+      final ASTNode first = node.getFirstChildNode();
+      if (first != null && first.getElementType() == ClojureTokenTypes.STRING_LITERAL) {
         return true;
       }
     }
     return false;
   }
 
-  private static boolean applicationStart(PsiElement first) {
-    return first instanceof ClSymbol;
-  }
-
+  /**
+   * @return false for whitespace and empty nodes
+   */
   private static boolean canBeCorrectBlock(final ASTNode node) {
-    return (node.getText().trim().length() > 0);
+    return !BLANKS.contains(node.getElementType()) && node.getTextLength() > 0;
   }
 
 
@@ -37,9 +37,9 @@ public interface ClojureElementTypes extends ClojureTokenTypes {
 
   final IElementType TOPLIST = new ClojureElementType("toplist");
   final ClStubElementType<EmptyStub, ClListImpl> LIST = new ClListElementType();
-  final IElementType VECTOR = new ClojureElementType("vector");
-  final IElementType MAP = new ClojureElementType("map");
-  final IElementType SET = new ClojureElementType("map");
+  final IElementType VECTOR = new ClojureReparseableElementType("vector", LEFT_SQUARE);
+  final IElementType MAP = new ClojureReparseableElementType("map", LEFT_CURLY);
+  final IElementType SET = new ClojureReparseableElementType("map", SHARP, LEFT_CURLY);
 
   final ClStubElementType<ClDefStub, ClDef> DEF = new ClDefElementType();
   final ClStubElementType<ClDefStub, ClDef> DEFMETHOD = new ClDefMethodElementType();
@@ -69,6 +69,11 @@ public interface ClojureElementTypes extends ClojureTokenTypes {
   final IElementType AT_EXPRESSION = new ClojureElementType("at expression");
   final IElementType TILDAAT_EXPRESSION = new ClojureElementType("tildaat expression");
 
+  /**
+   * Unparsed text of a form in a large file, see {@link ClojureLightweightMode}
+   */
+  final IElementType SKELETON = new ClojureElementType("skeleton");
+
 
   TokenSet LIST_LIKE_FORMS = TokenSet.create(LIST, VECTOR, MAP, SET, DEF, DEFMETHOD, NS, IN_NS, CREATE_NS);
 
@@ -0,0 +1,33 @@
+package org.jetbrains.plugins.clojure.parser;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lightweight mode of large files, usually generated data. Such a file is parsed to a skeleton: namespace forms
+ * are parsed as usual, definitions up to their names, and the rest of every top-level form is a single leaf.
+ * So only namespaces and definitions get stubs, and memory depends on the number of top-level forms rather than
+ * tokens. Annotators and folding skip these files, highlighting is done by the lexer.
+ * <p/>
+ * The size limit can be changed with the <code>clojure.lightweight.mode.threshold</code> system property.
+ */
+public class ClojureLightweightMode {
+  private static final int THRESHOLD = Integer.getInteger("clojure.lightweight.mode.threshold", 1024 * 1024);
+
+  private ClojureLightweightMode() {
+  }
+
+  /**
+   * @param textLength length of the file text
+   */
+  public static boolean isEnabled(int textLength) {
+    return textLength > THRESHOLD;
+  }
+
+  public static boolean isEnabled(@Nullable PsiElement element) {
+    if (element == null) return false;
+    final PsiFile file = element.getContainingFile();
+    return file != null && isEnabled(file.getTextLength());
+  }
+}
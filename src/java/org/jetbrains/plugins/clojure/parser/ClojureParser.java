@@ -4,15 +4,19 @@ import com.intellij.lang.ASTNode;
 import com.intellij.lang.PsiBuilder;
 import com.intellij.lang.PsiParser;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
 import com.intellij.util.containers.HashSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.clojure.ClojureBundle;
 import org.jetbrains.plugins.clojure.lexer.ClojureTokenTypes;
 import static org.jetbrains.plugins.clojure.parser.ClojureElementTypes.*;
 import org.jetbrains.plugins.clojure.parser.util.ParserUtils;
 import static org.jetbrains.plugins.clojure.parser.ClojureSpecialFormTokens.DEF_TOKENS;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 
@@ -41,18 +45,64 @@ public class ClojureParser implements PsiParser, ClojureTokenTypes {
     NS_TOKENS.addAll(Arrays.asList(NS, IN_NS, CREATE_NS));
   }
 
+  /**
+   * Forms nested deeper are parsed with an explicit stack, see {@link #parseExpressionWithStack(PsiBuilder)}
+   */
+  private static final int MAX_RECURSION_DEPTH = 200;
+
+  private static final TokenSet OPENING_BRACES = TokenSet.create(LEFT_PAREN, LEFT_SQUARE, LEFT_CURLY);
+  private static final TokenSet CLOSING_BRACES = TokenSet.create(RIGHT_PAREN, RIGHT_SQUARE, RIGHT_CURLY);
+
+  private final int myMaxRecursionDepth;
+  private int myDepth;
+
+  public ClojureParser() {
+    this(MAX_RECURSION_DEPTH);
+  }
+
+  ClojureParser(int maxRecursionDepth) {
+    myMaxRecursionDepth = maxRecursionDepth;
+  }
+
   @NotNull
   public ASTNode parse(IElementType root, PsiBuilder builder) {
     //builder.setDebugMode(true);
     PsiBuilder.Marker marker = builder.mark();
-    for (IElementType token = builder.getTokenType(); token != null; token = builder.getTokenType()) {
-      parseExpression(builder);
+    if (root == VECTOR) {
+      parseVector(builder, marker);
+    } else if (root == MAP) {
+      parseMap(builder, marker);
+    } else if (root == SET) {
+      parseSet(builder, marker);
+    } else if (ClojureLightweightMode.isEnabled(builder.getOriginalText().length())) {
+      for (IElementType token = builder.getTokenType(); token != null; token = builder.getTokenType()) {
+        parseSkeletonForm(builder);
+      }
+      marker.done(FILE);
+    } else {
+      for (IElementType token = builder.getTokenType(); token != null; token = builder.getTokenType()) {
+        parseExpression(builder);
+      }
+      marker.done(FILE);
     }
-    marker.done(FILE);
     return builder.getTreeBuilt();
   }
 
   private void parseExpression(PsiBuilder builder) {
+    if (myDepth >= myMaxRecursionDepth) {
+      parseExpressionWithStack(builder);
+      return;
+    }
+    myDepth++;
+    try {
+      parseExpressionRecursively(builder);
+    }
+    finally {
+      myDepth--;
+    }
+  }
+
+  private void parseExpressionRecursively(PsiBuilder builder) {
     IElementType token = builder.getTokenType();
     if (LEFT_PAREN == token) {
       parseList(builder);
@@ -89,6 +139,78 @@ public class ClojureParser implements PsiParser, ClojureTokenTypes {
     }
   }
 
+  /**
+   * Lightweight mode: parses a namespace form, the head of a definition, or collapses a top-level form
+   * into a single leaf
+   */
+  private void parseSkeletonForm(PsiBuilder builder) {
+    if (builder.getTokenType() == LEFT_PAREN) {
+      final PsiBuilder.Marker marker = markAndAdvance(builder);
+      final String tokenText = builder.getTokenText();
+      if (builder.getTokenType() == symATOM && NS_TOKENS.contains(tokenText)) {
+        parseNs(builder, marker);
+        return;
+      }
+      if (builder.getTokenType() == symATOM && DEF_TOKENS.contains(tokenText)) {
+        parseSymbol(builder);
+        while (builder.getTokenType() == UP || builder.getTokenType() == SHARPUP) {
+          parseExpression(builder); // metadata of the name
+        }
+        if (symS.contains(builder.getTokenType())) {
+          parseSymbol(builder);
+        }
+        collapseBody(builder);
+        if (builder.getTokenType() != RIGHT_PAREN) {
+          builder.error(ClojureBundle.message("expected.token", RIGHT_PAREN.toString()));
+        } else {
+          advanceLexerOrEOF(builder);
+        }
+        marker.done("defmethod".equals(tokenText) ? ClojureElementTypes.DEFMETHOD : ClojureElementTypes.DEF);
+        return;
+      }
+      marker.rollbackTo();
+    }
+
+    final PsiBuilder.Marker marker = builder.mark();
+    while (MODIFIERS.contains(builder.getTokenType())) {
+      builder.advanceLexer();
+    }
+    int depth = 0;
+    for (IElementType token = builder.getTokenType(); token != null; token = builder.getTokenType()) {
+      if (OPENING_BRACES.contains(token)) {
+        depth++;
+      } else if (CLOSING_BRACES.contains(token)) {
+        depth--;
+      }
+      builder.advanceLexer();
+      if (depth <= 0) break;
+    }
+    marker.collapse(SKELETON);
+  }
+
+  /**
+   * Lightweight mode: collapses the rest of a form, up to its closing delimiter, into a single leaf
+   */
+  private void collapseBody(PsiBuilder builder) {
+    final PsiBuilder.Marker marker = builder.mark();
+    final int start = builder.getCurrentOffset();
+    int depth = 0;
+    for (IElementType token = builder.getTokenType(); token != null; token = builder.getTokenType()) {
+      if (OPENING_BRACES.contains(token)) {
+        depth++;
+      } else if (CLOSING_BRACES.contains(token)) {
+        if (depth == 0) break;
+        depth--;
+      }
+      builder.advanceLexer();
+    }
+    if (builder.getCurrentOffset() > start) {
+      marker.collapse(SKELETON);
+    } else {
+      marker.drop();
+    }
+  }
+
   private void parseExpressions(IElementType endToken, PsiBuilder builder) {
     for (IElementType token = builder.getTokenType(); token != endToken && token != null; token = builder.getTokenType()) {
       parseExpression(builder);
@@ -230,10 +352,17 @@ public class ClojureParser implements PsiParser, ClojureTokenTypes {
   }
 
   private void parseSet(PsiBuilder builder) {
+    parseSet(builder, builder.mark());
+  }
+
+  /**
+   * Enter: Lexer is pointed at #, marker is placed before it
+   * Exit: Lexer is pointed immediately after closing }
+   */
+  private void parseSet(PsiBuilder builder, PsiBuilder.Marker marker) {
     if (!ParserUtils.lookAhead(builder, SHARP, LEFT_CURLY)) {
       internalError(ClojureBundle.message("expected.sharp.lcurly"));
     }
-    PsiBuilder.Marker marker = builder.mark();
     builder.advanceLexer();
     assert builder.getTokenType() != null;
     builder.eof();
@@ -330,7 +459,11 @@ public class ClojureParser implements PsiParser, ClojureTokenTypes {
    * Exit: Lexer is pointed immediately after the closing right paren, or at the end-of-file
    */
   private void parseVector(PsiBuilder builder) {
-    PsiBuilder.Marker marker = markAndAdvance(builder);
+    parseVector(builder, builder.mark());
+  }
+
+  private void parseVector(PsiBuilder builder, PsiBuilder.Marker marker) {
+    builder.advanceLexer();
     parseExpressions(RIGHT_SQUARE, builder);
     marker.done(VECTOR);
   }
@@ -340,8 +473,12 @@ public class ClojureParser implements PsiParser, ClojureTokenTypes {
    * Exit: Lexer is pointed immediately after the closing right paren, or at the end-of-file
    */
   private void parseMap(PsiBuilder builder) {
+    parseMap(builder, builder.mark());
+  }
+
+  private void parseMap(PsiBuilder builder, PsiBuilder.Marker marker) {
     if (builder.getTokenType() != LEFT_CURLY) internalError(ClojureBundle.message("expected.lcurly"));
-    PsiBuilder.Marker marker = markAndAdvance(builder);
+    builder.advanceLexer();
     for (IElementType token = builder.getTokenType(); token != RIGHT_CURLY && token != null; token = builder.getTokenType()) {
       PsiBuilder.Marker entry = builder.mark();
       parseExpression(builder); // key
@@ -425,4 +562,191 @@ public class ClojureParser implements PsiParser, ClojureTokenTypes {
     parseExpressions(RIGHT_PAREN, builder);
     marker.done(LIST);
   }
+
+  /*
+   * Explicit stack mode. Deeply nested data, e.g. generated EDN or Hiccup templates, would overflow the Java stack
+   * of the recursive descent above, so below some depth the rest of the form is parsed by a loop keeping open forms
+   * in a list. The forms are read exactly as the methods above read them, and the same tree is built.
+   */
+
+  /**
+   * A compound form being parsed
+   */
+  private static abstract class Frame {
+    protected final PsiBuilder.Marker myMarker;
+    protected int myExpressions;
+
+    protected Frame(PsiBuilder.Marker marker) {
+      myMarker = marker;
+    }
+
+    /**
+     * @return true if the next expression belongs to this form, false if the form should be closed
+     */
+    abstract boolean expectsExpression(PsiBuilder builder);
+
+    abstract void close(PsiBuilder builder);
+  }
+
+  /**
+   * Quoted, pound, meta and other forms made of a reader macro and a single expression
+   */
+  private static class PrefixFrame extends Frame {
+    private final IElementType myType;
+
+    private PrefixFrame(PsiBuilder.Marker marker, IElementType type) {
+      super(marker);
+      myType = type;
+    }
+
+    boolean expectsExpression(PsiBuilder builder) {
+      return myExpressions == 0;
+    }
+
+    void close(PsiBuilder builder) {
+      myMarker.done(myType);
+    }
+  }
+
+  /**
+   * Lists, definitions, vectors and sets
+   */
+  private static class SequenceFrame extends Frame {
+    private final IElementType myType;
+    private final IElementType myEndToken;
+    private final boolean myEndRequired;
+
+    private SequenceFrame(PsiBuilder.Marker marker, IElementType type, IElementType endToken, boolean endRequired) {
+      super(marker);
+      myType = type;
+      myEndToken = endToken;
+      myEndRequired = endRequired;
+    }
+
+    boolean expectsExpression(PsiBuilder builder) {
+      final IElementType token = builder.getTokenType();
+      return token != myEndToken && token != null;
+    }
+
+    void close(PsiBuilder builder) {
+      if (builder.getTokenType() == myEndToken) {
+        builder.advanceLexer();
+      } else if (myEndRequired) {
+        builder.error(ClojureBundle.message("expected.token", myEndToken.toString()));
+      }
+      myMarker.done(myType);
+    }
+  }
+
+  private static class MapFrame extends Frame {
+    private PsiBuilder.Marker myEntry;
+
+    private MapFrame(PsiBuilder.Marker marker) {
+      super(marker);
+    }
+
+    boolean expectsExpression(PsiBuilder builder) {
+      if (myEntry != null) {
+        // the value is parsed whatever the next token is
+        if (myExpressions % 2 != 0) return true;
+        myEntry.done(MAP_ENTRY);
+        myEntry = null;
+      }
+      final IElementType token = builder.getTokenType();
+      if (token == RIGHT_CURLY || token == null) return false;
+      myEntry = builder.mark();
+      return true;
+    }
+
+    void close(PsiBuilder builder) {
+      if (builder.getTokenType() != RIGHT_CURLY) {
+        builder.error(ClojureBundle.message("expected.token", RIGHT_CURLY.toString()));
+      } else {
+        builder.advanceLexer();
+      }
+      myMarker.done(MAP);
+    }
+  }
+
+  /**
+   * Parses an expression of any depth using constant Java stack
+   */
+  private void parseExpressionWithStack(PsiBuilder builder) {
+    final List<Frame> stack = new ArrayList<Frame>();
+    do {
+      final Frame frame = openExpression(builder);
+      if (frame != null) {
+        stack.add(frame);
+      } else if (!stack.isEmpty()) {
+        stack.get(stack.size() - 1).myExpressions++;
+      }
+      while (!stack.isEmpty()) {
+        final Frame top = stack.get(stack.size() - 1);
+        if (top.expectsExpression(builder)) break;
+        top.close(builder);
+        stack.remove(stack.size() - 1);
+        if (!stack.isEmpty()) {
+          stack.get(stack.size() - 1).myExpressions++;
+        }
+      }
+    } while (!stack.isEmpty());
+  }
+
+  /**
+   * Parses a simple expression, or starts a compound one like {@link #parseExpressionRecursively(PsiBuilder)} does
+   *
+   * @return frame of the compound expression, or null if the expression is parsed
+   */
+  @Nullable
+  private Frame openExpression(PsiBuilder builder) {
+    final IElementType token = builder.getTokenType();
+    if (LEFT_PAREN == token) {
+      final PsiBuilder.Marker marker = markAndAdvance(builder);
+      final String tokenText = builder.getTokenText();
+      if (builder.getTokenType() == symATOM && DEF_TOKENS.contains(tokenText)) {
+        parseSymbol(builder);
+        return new SequenceFrame(marker, "defmethod".equals(tokenText) ? DEFMETHOD : DEF, RIGHT_PAREN, true);
+      }
+      if (builder.getTokenType() == symATOM && NS_TOKENS.contains(tokenText)) {
+        parseSymbol(builder);
+        final IElementType type = CREATE_NS.equals(tokenText) ? ClojureElementTypes.CREATE_NS :
+            IN_NS.equals(tokenText) ? ClojureElementTypes.IN_NS : ClojureElementTypes.NS;
+        return new SequenceFrame(marker, type, RIGHT_PAREN, true);
+      }
+      return new SequenceFrame(marker, LIST, RIGHT_PAREN, true);
+    } else if (LEFT_SQUARE == token) {
+      return new SequenceFrame(markAndAdvance(builder), VECTOR, RIGHT_SQUARE, true);
+    } else if (LEFT_CURLY == token) {
+      return new MapFrame(markAndAdvance(builder));
+    } else if (QUOTE == token) {
+      return new PrefixFrame(markAndAdvance(builder), QUOTED_FORM);
+    } else if (BACKQUOTE == token) {
+      return new PrefixFrame(markAndAdvance(builder), BACKQUOTED_EXPRESSION);
+    } else if (ParserUtils.lookAhead(builder, SHARP, LEFT_CURLY)) {
+      final PsiBuilder.Marker marker = markAndAdvance(builder);
+      builder.advanceLexer();
+      return new SequenceFrame(marker, SET, RIGHT_CURLY, false);
+    } else if (SHARP == token) {
+      return new PrefixFrame(markAndAdvance(builder), SHARP_EXPRESSION);
+    } else if (UP == token) {
+      return new PrefixFrame(markAndAdvance(builder), META_FORM);
+    } else if (SHARPUP == token) {
+      return new PrefixFrame(markAndAdvance(builder), METADATA);
+    } else if (TILDA == token) {
+      return new PrefixFrame(markAndAdvance(builder), TILDA_EXPRESSION);
+    } else if (AT == token) {
+      return new PrefixFrame(markAndAdvance(builder), AT_EXPRESSION);
+    } else if (TILDAAT == token) {
+      return new PrefixFrame(markAndAdvance(builder), TILDAAT_EXPRESSION);
+    } else if (symS.contains(token)) {
+      parseSymbol(builder);
+    } else if (COLON_SYMBOL == token) {
+      parseKeyword(builder);
+    } else if (LITERALS.contains(token)) {
+      parseLiteral(builder);
+    } else {
+      syntaxError(builder, ClojureBundle.message("expected.left.paren.symbol.or.literal"));
+    }
+    return null;
+  }
 }
@@ -0,0 +1,160 @@
+package org.jetbrains.plugins.clojure.parser;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.Language;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IReparseableElementType;
+import com.intellij.psi.tree.TokenSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.clojure.file.ClojureFileType;
+import org.jetbrains.plugins.clojure.lexer.ClojureFlexLexer;
+import org.jetbrains.plugins.clojure.lexer.ClojureTokenTypes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Type of a collection form which can be reparsed alone after a change inside it, so typing in a vector, map or set
+ * doesn't reparse the whole file.
+ * <p/>
+ * The new text is reparsed only if {@link ClojureParser} would build the same tree for it in the context of the file,
+ * i.e. it's a single collection with balanced delimiters, and parsing it never needs a form after its closing
+ * delimiter. The latter happens when a reader macro or a map key is left without a form, as the parser takes
+ * the next token whatever it is.
+ * <p/>
+ * Only vectors, maps and sets are reparseable. Lists share their syntax with definitions and namespace forms, which
+ * are stub element types, so typing in a list, e.g. in the body of a <code>defn</code>, still reparses the file.
+ */
+public class ClojureReparseableElementType extends IReparseableElementType implements ClojureTokenTypes {
+  private static final TokenSet OPENING = TokenSet.create(LEFT_PAREN, LEFT_SQUARE, LEFT_CURLY);
+  private static final TokenSet CLOSING = TokenSet.create(RIGHT_PAREN, RIGHT_SQUARE, RIGHT_CURLY);
+  private static final TokenSet PREFIXES = TokenSet.create(QUOTE, BACKQUOTE, SHARP, UP, SHARPUP, TILDA, AT, TILDAAT);
+  private static final TokenSet INSIGNIFICANT = TokenSet.orSet(WHITESPACE_SET, COMMENTS);
+
+  private final IElementType[] myOpening;
+
+  /**
+   * @param opening tokens the collection starts with
+   */
+  public ClojureReparseableElementType(String debugName, IElementType... opening) {
+    super(debugName, ClojureFileType.CLOJURE_LANGUAGE);
+    myOpening = opening;
+  }
+
+  /**
+   * Node of the new text, parsed by {@link ClojureParser} with this type as the root
+   */
+  @Override
+  public ASTNode createNode(CharSequence text) {
+    return new LazyParseableElement(this, text);
+  }
+
+  @Override
+  public boolean isParsable(CharSequence buffer, Language fileLanguage, Project project) {
+    final List<IElementType> tokens = lex(buffer);
+    if (tokens == null || tokens.size() < myOpening.length) return false;
+    for (int i = 0; i < myOpening.length; i++) {
+      if (tokens.get(i) != myOpening[i]) return false;
+    }
+    return isSingleForm(tokens);
+  }
+
+  /**
+   * @return significant tokens of the text, or null if it has an unterminated string
+   */
+  private static List<IElementType> lex(CharSequence buffer) {
+    final List<IElementType> tokens = new ArrayList<IElementType>();
+    final Lexer lexer = new ClojureFlexLexer();
+    lexer.start(buffer);
+    for (IElementType type = lexer.getTokenType(); type != null; type = lexer.getTokenType()) {
+      if (type == WRONG_STRING_LITERAL) return null;
+      if (!INSIGNIFICANT.contains(type)) {
+        tokens.add(type);
+      }
+      lexer.advance();
+    }
+    return tokens;
+  }
+
+  /**
+   * Open collection, the same way {@link ClojureParser} reads it
+   */
+  private static class Frame {
+    private final IElementType myOpening;
+    private final boolean myMap;
+    private final Frame myParent;
+    private int myForms;
+    private boolean myPrefix;
+
+    private Frame(IElementType opening, boolean map, Frame parent) {
+      myOpening = opening;
+      myMap = map;
+      myParent = parent;
+    }
+  }
+
+  /**
+   * @return true if the tokens are a collection closed at the last token
+   */
+  static boolean isSingleForm(@NotNull List<IElementType> tokens) {
+    Frame frame = null;
+    boolean inSymbol = false;
+    boolean afterSeparator = false;
+    for (int i = 0; i < tokens.size(); i++) {
+      final IElementType type = tokens.get(i);
+      if (frame == null && i > 0) return false;
+
+      if (inSymbol) {
+        if (SEPARATORS.contains(type)) {
+          afterSeparator = true;
+          continue;
+        }
+        if (type == symATOM && afterSeparator) {
+          afterSeparator = false;
+          continue;
+        }
+        inSymbol = false;
+      }
+
+      if (CLOSING.contains(type)) {
+        if (frame == null || frame.myPrefix || frame.myMap && frame.myForms % 2 != 0 || !matches(frame.myOpening, type)) {
+          return false;
+        }
+        frame = frame.myParent;
+        continue;
+      }
+
+      if (frame != null) {
+        if (frame.myPrefix) {
+          frame.myPrefix = false;
+        } else {
+          frame.myForms++;
+        }
+      }
+
+      final boolean set = type == SHARP && i + 1 < tokens.size() && tokens.get(i + 1) == LEFT_CURLY;
+      if (set) {
+        frame = new Frame(LEFT_CURLY, false, frame);
+        i++;
+      } else if (OPENING.contains(type)) {
+        frame = new Frame(type, type == LEFT_CURLY, frame);
+      } else if (PREFIXES.contains(type)) {
+        if (frame == null) return false;
+        frame.myPrefix = true;
+      } else if (symS.contains(type) && type != symIMPLICIT_ARG) {
+        inSymbol = true;
+        afterSeparator = false;
+      }
+    }
+    return frame == null;
+  }
+
+  private static boolean matches(IElementType opening, IElementType closing) {
+    return opening == LEFT_PAREN && closing == RIGHT_PAREN ||
+        opening == LEFT_SQUARE && closing == RIGHT_SQUARE ||
+        opening == LEFT_CURLY && closing == RIGHT_CURLY;
+  }
+}
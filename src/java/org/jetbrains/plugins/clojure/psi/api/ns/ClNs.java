@@ -19,6 +19,12 @@ public interface ClNs extends ClList, PsiNamedElement {
 
   String getDefinedName();
 
+  /**
+   * @return directives of the namespace form, read from its stub if possible
+   */
+  @NotNull
+  ClNsDirectives getDirectives();
+
   @Nullable
   ClList findImportClause(@Nullable PsiElement place);
 
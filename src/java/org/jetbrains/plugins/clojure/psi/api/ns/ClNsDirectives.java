@@ -0,0 +1,118 @@
+package org.jetbrains.plugins.clojure.psi.api.ns;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Normalized contents of <code>:require</code>, <code>:use</code>, <code>:refer</code> and <code>:import</code>
+ * directives of a namespace form. It is stored in namespace stubs, so names can be resolved against
+ * a namespace without its AST.
+ */
+public class ClNsDirectives {
+  private final Map<String, String> myAliases = new LinkedHashMap<String, String>();
+  private final List<Refer> myRefers = new ArrayList<Refer>();
+  private final List<String> myImports = new ArrayList<String>();
+
+  /**
+   * Namespace whose public definitions become visible, together with <code>:only</code>, <code>:exclude</code>
+   * and <code>:rename</code> filters
+   */
+  public static class Refer {
+    private final String myNamespace;
+    private final List<String> myOnly = new ArrayList<String>();
+    private final List<String> myExcludes = new ArrayList<String>();
+    private final Map<String, String> myRenames = new LinkedHashMap<String, String>();
+
+    public Refer(@NotNull String namespace) {
+      myNamespace = namespace;
+    }
+
+    @NotNull
+    public String getNamespace() {
+      return myNamespace;
+    }
+
+    public List<String> getOnly() {
+      return myOnly;
+    }
+
+    public List<String> getExcludes() {
+      return myExcludes;
+    }
+
+    public Map<String, String> getRenames() {
+      return myRenames;
+    }
+
+    public void addOnly(String name) {
+      myOnly.add(name);
+    }
+
+    public void addExclude(String name) {
+      myExcludes.add(name);
+    }
+
+    public void addRename(String from, String to) {
+      myRenames.put(from, to);
+    }
+
+    /**
+     * @return name the definition is visible with, or null if it is filtered out
+     */
+    @Nullable
+    public String accept(String name) {
+      if (myExcludes.contains(name)) return null;
+      if (!myOnly.isEmpty() && !myOnly.contains(name)) return null;
+      final String newName = myRenames.get(name);
+      return newName == null ? name : newName;
+    }
+
+    /**
+     * @return names of definitions which may become visible as <code>newName</code>
+     */
+    public List<String> getOriginalNames(String newName) {
+      final List<String> result = new ArrayList<String>(1);
+      if (!myRenames.containsKey(newName)) result.add(newName);
+      for (Map.Entry<String, String> entry : myRenames.entrySet()) {
+        if (newName.equals(entry.getValue())) result.add(entry.getKey());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * @return namespace names by their aliases introduced with <code>:as</code>
+   */
+  public Map<String, String> getAliases() {
+    return myAliases;
+  }
+
+  public List<Refer> getRefers() {
+    return myRefers;
+  }
+
+  /**
+   * @return qualified names of imported classes
+   */
+  public List<String> getImports() {
+    return myImports;
+  }
+
+  public void addAlias(String alias, String namespace) {
+    myAliases.put(alias, namespace);
+  }
+
+  public void addRefer(Refer refer) {
+    myRefers.add(refer);
+  }
+
+  public void addImport(String qualifiedName) {
+    myImports.add(qualifiedName);
+  }
+
+  public boolean isEmpty() {
+    return myAliases.isEmpty() && myRefers.isEmpty() && myImports.isEmpty();
+  }
+}
@@ -11,12 +11,16 @@ import com.intellij.psi.search.PsiElementProcessor;
 import com.intellij.psi.stubs.PsiFileStub;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.psi.stubs.StubTree;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.impl.source.tree.LeafPsiElement;
 import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.TIntArrayList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.plugins.clojure.file.ClojureFileType;
@@ -33,12 +37,15 @@ import org.jetbrains.plugins.clojure.psi.util.ClojurePsiFactory;
 import org.jetbrains.plugins.clojure.psi.util.ClojurePsiUtil;
 import org.jetbrains.plugins.clojure.psi.util.ClojureTextUtil;
 import org.jetbrains.plugins.clojure.psi.impl.synthetic.ClSyntheticClassImpl;
+import org.jetbrains.plugins.clojure.psi.impl.ns.DefaultNamespaceDefinitions;
 import org.jetbrains.plugins.clojure.psi.impl.ns.NamespaceUtil;
 import org.jetbrains.plugins.clojure.psi.resolve.ResolveUtil;
 import org.jetbrains.plugins.clojure.parser.ClojureParser;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * User: peter
@@ -58,6 +65,17 @@ public class ClojureFileImpl extends PsiFileBase implements ClojureFile {
   private PsiElement myContext = null;
   private PsiClass myClass;
   private boolean myScriptClassInitialized = false;
+  private volatile CachedValue<TopLevelDeclarations> myTopLevelDeclarations;
+
+  /**
+   * Top-level forms of the file in order, with indices of definitions grouped by name and of all other forms
+   * which may declare something
+   */
+  private static class TopLevelDeclarations {
+    private final List<PsiElement> myForms = new ArrayList<PsiElement>();
+    private final Map<String, TIntArrayList> myDefinitions = new HashMap<String, TIntArrayList>();
+    private final TIntArrayList myOtherForms = new TIntArrayList();
+  }
 
   @Override
   public String toString() {
@@ -127,6 +145,7 @@ public class ClojureFileImpl extends PsiFileBase implements ClojureFile {
   protected PsiFileImpl clone() {
     final ClojureFileImpl clone = (ClojureFileImpl) super.clone();
     clone.myContext = myContext;
+    clone.myTopLevelDeclarations = null;
     return clone;
   }
 
@@ -290,17 +309,19 @@ public class ClojureFileImpl extends PsiFileBase implements ClojureFile {
   public boolean processDeclarations(@NotNull PsiScopeProcessor processor, @NotNull ResolveState state, PsiElement lastParent, @NotNull PsiElement place) {
 
     //Process precedent read forms
-    ResolveUtil.processChildren(this, processor, state, lastParent, place);
+    final String name = ResolveUtil.getHintName(processor);
+    if (name != null) {
+      processTopLevelDeclarations(name, processor, state, lastParent, place);
+    } else {
+      ResolveUtil.processChildren(this, processor, state, lastParent, place);
+    }
 
-    final JavaPsiFacade facade = JavaPsiFacade.getInstance(getProject());
+    final DefaultNamespaceDefinitions defaultDefinitions = DefaultNamespaceDefinitions.getInstance(getProject());
 
     // Add all java.lang classes
-    final PsiPackage javaLang = facade.findPackage(ClojurePsiUtil.JAVA_LANG);
-    if (javaLang != null) {
-      for (PsiClass clazz : javaLang.getClasses()) {
-        if (!ResolveUtil.processElement(processor, clazz)) {
-          return false;
-        }
+    for (PsiNamedElement clazz : defaultDefinitions.getJavaLangClasses(name)) {
+      if (!ResolveUtil.processElement(processor, clazz)) {
+        return false;
       }
     }
 
@@ -311,7 +332,7 @@ public class ClojureFileImpl extends PsiFileBase implements ClojureFile {
     }
 
     // Add all symbols from default namespaces
-    for (PsiNamedElement element : NamespaceUtil.getDefaultDefinitions(getProject())) {
+    for (PsiNamedElement element : defaultDefinitions.getDefinitions(name)) {
       if (PsiTreeUtil.findCommonParent(element, place) != element && !ResolveUtil.processElement(processor, element)) {
         return false;
       }
@@ -320,6 +341,67 @@ public class ClojureFileImpl extends PsiFileBase implements ClojureFile {
     return super.processDeclarations(processor, state, lastParent, place);
   }
 
+  /**
+   * Same as {@link ResolveUtil#processChildren} for a processor looking for a single name: only definitions
+   * with this name and forms which are not definitions are visited, the nearest ones first.
+   */
+  private boolean processTopLevelDeclarations(String name, PsiScopeProcessor processor, ResolveState state,
+                                              PsiElement lastParent, PsiElement place) {
+    final TopLevelDeclarations declarations = getTopLevelDeclarations();
+    final int end = lastParent == null || lastParent.getParent() != this ?
+        Integer.MAX_VALUE : lastParent.getTextRange().getStartOffset();
+    final TIntArrayList definitions = declarations.myDefinitions.get(name);
+    final TIntArrayList otherForms = declarations.myOtherForms;
+    int definition = definitions == null ? -1 : definitions.size() - 1;
+    int otherForm = otherForms.size() - 1;
+    while (definition >= 0 || otherForm >= 0) {
+      final int index;
+      if (otherForm < 0 || definition >= 0 && definitions.get(definition) > otherForms.get(otherForm)) {
+        index = definitions.get(definition--);
+      } else {
+        index = otherForms.get(otherForm--);
+      }
+      if (!processTopLevelForm(declarations.myForms.get(index), end, processor, state, place)) return false;
+    }
+    return true;
+  }
+
+  private static boolean processTopLevelForm(PsiElement form, int end, PsiScopeProcessor processor, ResolveState state,
+                                             PsiElement place) {
+    if (form.getTextRange().getStartOffset() >= end || PsiTreeUtil.findCommonParent(place, form) == form) return true;
+    return form.processDeclarations(processor, state, null, place);
+  }
+
+  private TopLevelDeclarations getTopLevelDeclarations() {
+    CachedValue<TopLevelDeclarations> declarations = myTopLevelDeclarations;
+    if (declarations == null) {
+      declarations = CachedValuesManager.getManager(getProject()).createCachedValue(new CachedValueProvider<TopLevelDeclarations>() {
+        public Result<TopLevelDeclarations> compute() {
+          final TopLevelDeclarations result = new TopLevelDeclarations();
+          for (PsiElement child = getFirstChild(); child != null; child = child.getNextSibling()) {
+            final int index = result.myForms.size();
+            if (child instanceof ClDef) {
+              final String name = ((ClDef) child).getName();
+              TIntArrayList list = result.myDefinitions.get(name);
+              if (list == null) {
+                list = new TIntArrayList(1);
+                result.myDefinitions.put(name, list);
+              }
+              list.add(index);
+              result.myForms.add(child);
+            } else if (!isWrongElement(child)) {
+              result.myOtherForms.add(index);
+              result.myForms.add(child);
+            }
+          }
+          return Result.create(result, ClojureFileImpl.this);
+        }
+      }, false);
+      myTopLevelDeclarations = declarations;
+    }
+    return declarations.getValue();
+  }
+
   public PsiElement setClassName(@NonNls String s) {
     //todo implement me!
     return null;
@@ -1,11 +1,16 @@
 package org.jetbrains.plugins.clojure.psi.impl;
 
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.*;
 import com.intellij.psi.scope.NameHint;
 import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.clojure.psi.ClojurePsiElement;
 import org.jetbrains.plugins.clojure.psi.api.*;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNsDirectives;
 import org.jetbrains.plugins.clojure.psi.api.symbols.ClSymbol;
 import org.jetbrains.plugins.clojure.psi.impl.list.ListDeclarations;
 import org.jetbrains.plugins.clojure.psi.impl.ns.NamespaceUtil;
@@ -20,6 +25,10 @@ import java.util.*;
  */
 public abstract class ImportOwner {
   public static boolean processDeclarations(PsiElement self, PsiScopeProcessor processor, PsiElement place) {
+    final String name = ResolveUtil.getHintName(processor);
+    if (name != null && self instanceof ClNs) {
+      return processDirectives(((ClNs) self).getDirectives(), name, processor, place);
+    }
     for (PsiElement element : self.getChildren()) {
       if (element instanceof ClList || element instanceof ClVector) {
         ClListLike directive = (ClListLike) element;
@@ -199,14 +208,13 @@ public abstract class ImportOwner {
 
   private static boolean checkReferStatement(PsiScopeProcessor processor, PsiElement place, ClListLike child, PsiElement stmt) {
     if (stmt instanceof ClSymbol) {
-      if (!checkReferQualifier(processor, place, child, ((ClSymbol) stmt).getNameString(), new ReferFilter())) return false;
+      if (!checkReferQualifier(processor, place, new ClNsDirectives.Refer(((ClSymbol) stmt).getNameString()))) return false;
     } else if (stmt instanceof ClVector && isSpecialVector((ClVector) stmt)) {
       ClVector vector = (ClVector) stmt;
       final ClSymbol[] symbols = vector.getAllSymbols();
       if (symbols.length > 0) {
         final ClSymbol symbol = symbols[0];
-        final ReferFilter referFilter = collectReferFilter(vector, symbol);
-        if (!checkReferQualifier(processor, place, child, symbol.getNameString(), referFilter)) {
+        if (!checkReferQualifier(processor, place, collectRefer(symbol.getNameString(), vector))) {
           return false;
         }
       }
@@ -217,51 +225,8 @@ public abstract class ImportOwner {
     return true;
   }
 
-  private static class ReferFilter {
-    private List<String> excludes = new ArrayList<String>();
-    private List<String> only = new ArrayList<String>();
-    private Map<String, ClSymbol> renames = new HashMap<String, ClSymbol>();
-
-    private void setHasOnly(boolean hasOnly) {
-      this.hasOnly = hasOnly;
-    }
-
-    private boolean hasOnly = false;
-
-    public void addExclude(String s) {
-      excludes.add(s);
-    }
-
-    public void addOnly(String s) {
-      only.add(s);
-    }
-
-    public void addRename(String from, ClSymbol to) {
-      renames.put(from, to);
-    }
-
-    public List<String> getExcludes() {
-      return excludes;
-    }
-
-    private List<String> getOnly() {
-      return only;
-    }
-
-    private Map<String, ClSymbol> getRenames() {
-      return renames;
-    }
-
-    public String accept(String name) {
-      if (excludes.contains(name)) return null;
-      if (!only.isEmpty() && !only.contains(name)) return null;
-      final ClSymbol symbol = renames.get(name);
-      return symbol == null ? name : symbol.getNameString();
-    }
-  }
-
-  private static ReferFilter collectReferFilter(ClVector vector, ClSymbol firstSymbol) {
-    final ReferFilter result = new ReferFilter();
+  private static ClNsDirectives.Refer collectRefer(String namespace, ClVector vector) {
+    final ClNsDirectives.Refer result = new ClNsDirectives.Refer(namespace);
     for (PsiElement child : vector.getChildren()) {
       if (child instanceof ClKeyword) {
         final String keywordName = ((ClKeyword) child).getName();
@@ -288,7 +253,7 @@ public abstract class ImportOwner {
               final ClojurePsiElement key = entry.getKey();
               final ClojurePsiElement value = entry.getValue();
               if (key instanceof ClSymbol && value instanceof ClSymbol) {
-                result.addRename(((ClSymbol) key).getNameString(), (ClSymbol) value);
+                result.addRename(((ClSymbol) key).getNameString(), ((ClSymbol) value).getNameString());
               }
             }
           }
@@ -353,12 +318,22 @@ public abstract class ImportOwner {
     return true;
   }
 
-  private static boolean checkReferQualifier(PsiScopeProcessor processor, PsiElement place, ClListLike child,
-                                             String qualifiedName, ReferFilter filter) {
-    NameHint nameHint = processor.getHint(NameHint.KEY);
-    String expectedName = null;
-    if (nameHint != null) expectedName = nameHint.getName(ResolveState.initial());
-    for (PsiNamedElement element : NamespaceUtil.getDeclaredElements(qualifiedName, place.getProject())) {
+  private static boolean checkReferQualifier(PsiScopeProcessor processor, PsiElement place, ClNsDirectives.Refer refer) {
+    final String qualifiedName = refer.getNamespace();
+    final String expectedName = ResolveUtil.getHintName(processor);
+    if (expectedName != null) {
+      for (String originalName : refer.getOriginalNames(expectedName)) {
+        final PsiNamedElement[] elements = NamespaceUtil.getDeclaredElements(qualifiedName, originalName, place.getProject());
+        if (!processReferredElements(processor, elements, expectedName, refer)) return false;
+      }
+      return true;
+    }
+    return processReferredElements(processor, NamespaceUtil.getDeclaredElements(qualifiedName, place.getProject()), null, refer);
+  }
+
+  private static boolean processReferredElements(PsiScopeProcessor processor, PsiNamedElement[] elements,
+                                                 String expectedName, ClNsDirectives.Refer filter) {
+    for (PsiNamedElement element : elements) {
       if (element != null) {
         final String name = element.getName();
         final String newName = filter.accept(name);
@@ -431,7 +406,8 @@ public abstract class ImportOwner {
         if (next instanceof ClSymbol) {
           isSimple = false;
           ClSymbol clazzSym = (ClSymbol) next;
-          if (!checkReferQualifier(processor, place, child, ((ClSymbol) fst).getNameString() + "." + clazzSym.getNameString(), new ReferFilter())) {
+          if (!checkReferQualifier(processor, place,
+              new ClNsDirectives.Refer(((ClSymbol) fst).getNameString() + "." + clazzSym.getNameString()))) {
             return false;
           }
         } else if (next instanceof ClVector) {
@@ -440,20 +416,153 @@ public abstract class ImportOwner {
           final ClSymbol[] symbols = vector.getAllSymbols();
           if (symbols.length > 0) {
             final ClSymbol symbol = symbols[0];
-            ReferFilter filter = collectReferFilter(vector, symbol);
-            if (!checkReferQualifier(processor, place, child,
-                ((ClSymbol) fst).getNameString() + "." + symbol.getNameString(), filter)) {
+            if (!checkReferQualifier(processor, place,
+                collectRefer(((ClSymbol) fst).getNameString() + "." + symbol.getNameString(), vector))) {
               return false;
             }
           }
         }
 
         if (isSimple && listLike instanceof ClVector) {
-          if (!checkReferQualifier(processor, place, child, ((ClSymbol) fst).getNameString(), new ReferFilter())) return false;
+          if (!checkReferQualifier(processor, place, new ClNsDirectives.Refer(((ClSymbol) fst).getNameString()))) return false;
         }
         next = next.getNextSibling();
       }
     }
     return true;
   }
+
+  /**
+   * Resolves a single name against the directives of a namespace without walking its AST.
+   */
+  private static boolean processDirectives(ClNsDirectives directives, String name, PsiScopeProcessor processor,
+                                           PsiElement place) {
+    final Project project = place.getProject();
+    for (String qualifiedName : directives.getImports()) {
+      if (name.equals(StringUtil.getShortName(qualifiedName))) {
+        final PsiClass clazz = JavaPsiFacade.getInstance(project).findClass(qualifiedName, GlobalSearchScope.allScope(project));
+        if (clazz != null && !ResolveUtil.processElement(processor, clazz)) return false;
+      }
+    }
+
+    final String aliasedNamespace = directives.getAliases().get(name);
+    if (aliasedNamespace != null) {
+      PsiNamedElement namespace = NamespaceUtil.getNamespace(aliasedNamespace, project);
+      if (namespace == null) {
+        final PsiPackage aPackage = JavaPsiFacade.getInstance(project).findPackage(aliasedNamespace);
+        if (aPackage != null) namespace = NamespaceUtil.getNamespaceElement(aPackage);
+      }
+      if (namespace != null && !processor.execute(namespace, ResolveState.initial())) return false;
+    }
+
+    for (ClNsDirectives.Refer refer : directives.getRefers()) {
+      if (!checkReferQualifier(processor, place, refer)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Collects the directives of a namespace form the same way {@link #processDeclarations} interprets them.
+   */
+  public static ClNsDirectives collectDirectives(PsiElement self) {
+    final ClNsDirectives directives = new ClNsDirectives();
+    for (PsiElement element : self.getChildren()) {
+      if (element instanceof ClList || element instanceof ClVector) {
+        final ClListLike directive = (ClListLike) element;
+        final PsiElement first = directive.getFirstNonLeafElement();
+        if (first == null) break;
+        final String headText = first.getText();
+        final boolean isImport = ClojureKeywords.IMPORT.equals(headText) || ListDeclarations.IMPORT.equals(headText);
+        final boolean isUse = ClojureKeywords.USE.equals(headText) || ListDeclarations.USE.equals(headText);
+        final boolean isRequire = ClojureKeywords.REQUIRE.equals(headText) || ListDeclarations.REQUIRE.equals(headText);
+        final boolean isRefer = ClojureKeywords.REFER.equals(headText) || ListDeclarations.REFER.equals(headText);
+        final boolean isFunction = first instanceof ClSymbol;
+        for (PsiElement stmt : directive.getChildren()) {
+          if (stmt == first) continue;
+          if (isFunction) {
+            // arguments of function calls are quoted, only import also accepts unquoted ones
+            if (stmt instanceof ClQuotedForm) {
+              stmt = ((ClQuotedForm) stmt).getQuotedElement();
+            } else if (!isImport) {
+              continue;
+            }
+          }
+          if (isImport) collectImportStatement(stmt, directives);
+          if (isRequire || isUse) collectRequireStatement(stmt, directives);
+          if (isRefer || isUse) collectReferStatement(stmt, directives);
+        }
+      }
+    }
+    return directives;
+  }
+
+  private static void collectImportStatement(PsiElement stmt, ClNsDirectives directives) {
+    if (stmt instanceof ClSymbol) {
+      directives.addImport(((ClSymbol) stmt).getNameString());
+    } else if (stmt instanceof ClVector || stmt instanceof ClList) {
+      for (String qualifiedName : extractImportQualifiedNames((ClListLike) stmt)) {
+        directives.addImport(qualifiedName);
+      }
+    }
+  }
+
+  private static void collectRequireStatement(PsiElement stmt, ClNsDirectives directives) {
+    if (stmt instanceof ClVector && isSpecialVector((ClVector) stmt, ClojureKeywords.AS)) {
+      final ClSymbol[] symbols = ((ClVector) stmt).getAllSymbols();
+      final String alias = findAlias((ClVector) stmt);
+      if (symbols.length > 0 && alias != null) directives.addAlias(alias, symbols[0].getNameString());
+    } else if (stmt instanceof ClVector || stmt instanceof ClList) {
+      final PsiElement fst = ((ClListLike) stmt).getFirstNonLeafElement();
+      if (!(fst instanceof ClSymbol)) return;
+      for (PsiElement next = fst.getNextSibling(); next != null; next = next.getNextSibling()) {
+        if (next instanceof ClVector && isSpecialVector((ClVector) next, ClojureKeywords.AS)) {
+          final ClSymbol[] symbols = ((ClVector) next).getAllSymbols();
+          final String alias = findAlias((ClVector) next);
+          if (symbols.length > 0 && alias != null) {
+            directives.addAlias(alias, ((ClSymbol) fst).getNameString() + "." + symbols[0].getNameString());
+          }
+        }
+      }
+    }
+  }
+
+  private static void collectReferStatement(PsiElement stmt, ClNsDirectives directives) {
+    if (stmt instanceof ClSymbol) {
+      directives.addRefer(new ClNsDirectives.Refer(((ClSymbol) stmt).getNameString()));
+    } else if (stmt instanceof ClVector && isSpecialVector((ClVector) stmt)) {
+      final ClSymbol[] symbols = ((ClVector) stmt).getAllSymbols();
+      if (symbols.length > 0) directives.addRefer(collectRefer(symbols[0].getNameString(), (ClVector) stmt));
+    } else if (stmt instanceof ClVector || stmt instanceof ClList) {
+      final PsiElement fst = ((ClListLike) stmt).getFirstNonLeafElement();
+      if (!(fst instanceof ClSymbol)) return;
+      final String prefix = ((ClSymbol) fst).getNameString();
+      boolean isSimple = true;
+      for (PsiElement next = fst.getNextSibling(); next != null; next = next.getNextSibling()) {
+        if (next instanceof ClSymbol) {
+          isSimple = false;
+          directives.addRefer(new ClNsDirectives.Refer(prefix + "." + ((ClSymbol) next).getNameString()));
+        } else if (next instanceof ClVector) {
+          isSimple = false;
+          final ClSymbol[] symbols = ((ClVector) next).getAllSymbols();
+          if (symbols.length > 0) {
+            directives.addRefer(collectRefer(prefix + "." + symbols[0].getNameString(), (ClVector) next));
+          }
+        }
+      }
+      if (isSimple && stmt instanceof ClVector) {
+        directives.addRefer(new ClNsDirectives.Refer(prefix));
+      }
+    }
+  }
+
+  @Nullable
+  private static String findAlias(ClVector vector) {
+    for (PsiElement child : vector.getChildren()) {
+      if (child instanceof ClKeyword && ((ClKeyword) child).getName().equals(ClojureKeywords.AS)) {
+        final PsiElement symbol = ClojurePsiUtil.getNextNonWhiteSpace(child);
+        return symbol instanceof ClSymbol ? ((ClSymbol) symbol).getName() : null;
+      }
+    }
+    return null;
+  }
 }
@@ -5,6 +5,9 @@ import com.intellij.openapi.util.Condition;
 import com.intellij.psi.*;
 import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NonNls;
@@ -13,6 +16,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.clojure.psi.api.ClList;
 import org.jetbrains.plugins.clojure.psi.api.ClListLike;
 import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNsDirectives;
 import org.jetbrains.plugins.clojure.psi.api.symbols.ClSymbol;
 import org.jetbrains.plugins.clojure.psi.impl.ImportOwner;
 import org.jetbrains.plugins.clojure.psi.impl.list.ClListBaseImpl;
@@ -25,6 +29,7 @@ import org.jetbrains.plugins.clojure.psi.util.ClojurePsiUtil;
  * @author ilyas
  */
 public class ClNsImpl extends ClListBaseImpl<ClNsStub> implements ClNs, StubBasedPsiElement<ClNsStub> {
+  private volatile CachedValue<ClNsDirectives> myDirectives;
 
   public ClNsImpl(ClNsStub stub, @NotNull IStubElementType nodeType) {
     super(stub, nodeType);
@@ -75,6 +80,25 @@ public class ClNsImpl extends ClListBaseImpl<ClNsStub> implements ClNs, StubBase
     return "";
   }
 
+  @NotNull
+  public ClNsDirectives getDirectives() {
+    ClNsStub stub = getStub();
+    if (stub != null) {
+      return stub.getDirectives();
+    }
+
+    CachedValue<ClNsDirectives> directives = myDirectives;
+    if (directives == null) {
+      directives = CachedValuesManager.getManager(getProject()).createCachedValue(new CachedValueProvider<ClNsDirectives>() {
+        public Result<ClNsDirectives> compute() {
+          return Result.create(ImportOwner.collectDirectives(ClNsImpl.this), ClNsImpl.this);
+        }
+      }, false);
+      myDirectives = directives;
+    }
+    return directives.getValue();
+  }
+
   public PsiElement setName(@NonNls String name) throws IncorrectOperationException {
     //todo implement me
     return this;
@@ -0,0 +1,168 @@
+package org.jetbrains.plugins.clojure.psi.impl.ns;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootAdapter;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.clojure.psi.api.ClojureFile;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
+import org.jetbrains.plugins.clojure.psi.util.ClojurePsiUtil;
+
+import java.util.*;
+
+/**
+ * Definitions of {@link NamespaceUtil#DEFAULT_NSES} and classes of <code>java.lang</code> grouped by name,
+ * so that resolving an unqualified symbol doesn't enumerate all of them.
+ * <p/>
+ * The table is dropped when a file it was built from is changed, when a file gets a default namespace
+ * and when project roots change. Other changes are filtered out by the event parent, so typing inside
+ * forms of ordinary files never computes their namespace.
+ */
+public class DefaultNamespaceDefinitions {
+  private final Project myProject;
+  private volatile Table myTable;
+
+  private static class Table {
+    private final Elements myJavaLangClasses = new Elements();
+    private final Elements myDefinitions = new Elements();
+    private final Set<PsiFile> myFiles = new HashSet<PsiFile>();
+  }
+
+  private static class Elements {
+    private final Map<String, List<PsiNamedElement>> myElements = new HashMap<String, List<PsiNamedElement>>();
+    private final List<PsiNamedElement> myAllElements = new ArrayList<PsiNamedElement>();
+
+    private void add(PsiNamedElement element) {
+      final String name = element.getName();
+      if (name == null) return;
+      List<PsiNamedElement> list = myElements.get(name);
+      if (list == null) {
+        list = new ArrayList<PsiNamedElement>(1);
+        myElements.put(name, list);
+      }
+      list.add(element);
+      myAllElements.add(element);
+    }
+
+    @NotNull
+    private List<PsiNamedElement> get(@Nullable String name) {
+      if (name == null) return myAllElements;
+      final List<PsiNamedElement> elements = myElements.get(name);
+      return elements == null ? Collections.<PsiNamedElement>emptyList() : elements;
+    }
+  }
+
+  public DefaultNamespaceDefinitions(Project project) {
+    myProject = project;
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        changed(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        changed(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        changed(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        changed(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        changed(event);
+      }
+    }, project);
+    project.getMessageBus().connect(project).subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        myTable = null;
+      }
+    });
+  }
+
+  public static DefaultNamespaceDefinitions getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, DefaultNamespaceDefinitions.class);
+  }
+
+  /**
+   * @return classes of <code>java.lang</code> named <code>name</code>, or all of them if <code>name</code> is null
+   */
+  @NotNull
+  public List<PsiNamedElement> getJavaLangClasses(@Nullable String name) {
+    return getTable().myJavaLangClasses.get(name);
+  }
+
+  /**
+   * @return definitions of default namespaces named <code>name</code>, or all of them if <code>name</code> is null
+   */
+  @NotNull
+  public List<PsiNamedElement> getDefinitions(@Nullable String name) {
+    return getTable().myDefinitions.get(name);
+  }
+
+  @NotNull
+  private Table getTable() {
+    Table table = myTable;
+    if (table == null) {
+      table = new Table();
+      final PsiPackage javaLang = JavaPsiFacade.getInstance(myProject).findPackage(ClojurePsiUtil.JAVA_LANG);
+      if (javaLang != null) {
+        for (PsiClass clazz : javaLang.getClasses()) {
+          table.myJavaLangClasses.add(clazz);
+        }
+      }
+      for (String ns : NamespaceUtil.DEFAULT_NSES) {
+        for (PsiNamedElement element : NamespaceUtil.getDeclaredElements(ns, myProject)) {
+          table.myDefinitions.add(element);
+          table.myFiles.add(element.getContainingFile());
+        }
+      }
+      myTable = table;
+    }
+    return table;
+  }
+
+  private void changed(PsiTreeChangeEvent event) {
+    final Table table = myTable;
+    if (table == null) return;
+    PsiFile file = event.getFile();
+    if (file == null && event.getChild() instanceof PsiFile) {
+      // a whole file is added or deleted
+      file = (PsiFile) event.getChild();
+    }
+    if (!(file instanceof ClojureFile)) return;
+    if (table.myFiles.contains(file) ||
+        mayChangeNamespace(event) && file.isValid() && isDefaultNamespace(((ClojureFile) file).getNamespace())) {
+      myTable = null;
+    }
+  }
+
+  /**
+   * @return true if the event is a change of a whole file, of its top-level forms or of a namespace form
+   */
+  private static boolean mayChangeNamespace(PsiTreeChangeEvent event) {
+    final PsiElement parent = event.getParent();
+    if (event.getFile() == null || parent == null || parent instanceof PsiFile || parent instanceof ClNs) return true;
+    final PsiElement grandParent = parent.getParent();
+    return grandParent instanceof ClNs;
+  }
+
+  private static boolean isDefaultNamespace(@Nullable String ns) {
+    for (String defaultNs : NamespaceUtil.DEFAULT_NSES) {
+      if (defaultNs.equals(ns)) return true;
+    }
+    return false;
+  }
+}
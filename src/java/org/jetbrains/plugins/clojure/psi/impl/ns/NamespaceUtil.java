@@ -8,16 +8,15 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.StubIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.plugins.clojure.psi.api.ClojureFile;
 import org.jetbrains.plugins.clojure.psi.api.defs.ClDef;
 import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
 import org.jetbrains.plugins.clojure.psi.resolve.ResolveUtil;
+import org.jetbrains.plugins.clojure.psi.stubs.index.ClDefNamespaceIndex;
+import org.jetbrains.plugins.clojure.psi.stubs.index.ClDefQualifiedNameIndex;
+import org.jetbrains.plugins.clojure.psi.stubs.index.ClojureNsAliasIndex;
 import org.jetbrains.plugins.clojure.psi.stubs.index.ClojureNsNameIndex;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.*;
 
 /**
  * @author ilyas
@@ -34,22 +33,26 @@ public class NamespaceUtil {
   };
 
   public static PsiNamedElement[] getDeclaredElements(@NotNull String nsFqn, @NotNull Project project) {
-    final Collection<ClNs> nses = StubIndex.getInstance().get(ClojureNsNameIndex.KEY, nsFqn, project, GlobalSearchScope.allScope(project));
-    ArrayList<PsiNamedElement> result = new ArrayList<PsiNamedElement>();
-
-    for (ClNs ns : nses) {
-      if (nsFqn.equals(ns.getName())) {
-        final PsiFile file = ns.getContainingFile();
-        if (file instanceof ClojureFile) {
-          for (ClDef elem : ((ClojureFile) file).getFileDefinitions()) {
-            if (StringUtil.isNotEmpty(elem.getName()) && ns.getTextOffset() < elem.getTextOffset()) {
-              result.add(elem);
-            }
-          }
-        }
+    return toNamedElements(StubIndex.getInstance().get(ClDefNamespaceIndex.KEY, nsFqn, project, GlobalSearchScope.allScope(project)));
+  }
+
+  /**
+   * @return elements named <code>name</code> declared in the namespace, or all of them if <code>name</code> is null
+   */
+  public static PsiNamedElement[] getDeclaredElements(@NotNull String nsFqn, @Nullable String name, @NotNull Project project) {
+    if (name == null) return getDeclaredElements(nsFqn, project);
+    return toNamedElements(StubIndex.getInstance().get(ClDefQualifiedNameIndex.KEY, nsFqn + "/" + name, project,
+        GlobalSearchScope.allScope(project)));
+  }
+
+  private static PsiNamedElement[] toNamedElements(Collection<ClDef> definitions) {
+    final ArrayList<PsiNamedElement> result = new ArrayList<PsiNamedElement>(definitions.size());
+    for (ClDef definition : definitions) {
+      if (StringUtil.isNotEmpty(definition.getName())) {
+        result.add(definition);
       }
     }
-    return result.toArray(PsiNamedElement.EMPTY_ARRAY);
+    return result.toArray(new PsiNamedElement[result.size()]);
   }
 
   public static PsiNamedElement[] getDefaultDefinitions(@NotNull Project project) {
@@ -60,6 +63,18 @@ public class NamespaceUtil {
     return res.toArray(PsiNamedElement.EMPTY_ARRAY);
   }
 
+  /**
+   * @return names of namespaces which are given the alias with <code>:as</code> anywhere in the project
+   */
+  public static Set<String> getNamespacesByAlias(@NotNull String alias, @NotNull Project project) {
+    final Set<String> result = new LinkedHashSet<String>();
+    for (ClNs ns : StubIndex.getInstance().get(ClojureNsAliasIndex.KEY, alias, project, GlobalSearchScope.allScope(project))) {
+      final String namespace = ns.getDirectives().getAliases().get(alias);
+      if (namespace != null) result.add(namespace);
+    }
+    return result;
+  }
+
   public static ClSyntheticNamespace[] getTopLevelNamespaces(@NotNull Project project) {
     ArrayList<ClSyntheticNamespace> result = new ArrayList<ClSyntheticNamespace>();
     for (String fqn : StubIndex.getInstance().getAllKeys(ClojureNsNameIndex.KEY, project)) {
@@ -115,6 +130,9 @@ public class NamespaceUtil {
 
     @Override
     public boolean processDeclarations(@NotNull PsiScopeProcessor processor, @NotNull ResolveState state, PsiElement lastParent, @NotNull PsiElement place) {
+      final String name = ResolveUtil.getHintName(processor);
+      if (name != null) return processDeclarationsNamed(processor, name, place);
+
       final HashSet<String> innerNamespaces = new HashSet<String>();
 
       // Add inner namespaces
@@ -155,6 +173,40 @@ public class NamespaceUtil {
       return true;
     }
 
+    /**
+     * Same as {@link #processDeclarations} for a processor looking for a single name, without enumerating
+     * all inner namespaces, declarations and classes.
+     */
+    private boolean processDeclarationsNamed(PsiScopeProcessor processor, String name, PsiElement place) {
+      final String qualifiedName = getQualifiedName();
+      final String innerName = qualifiedName.length() == 0 ? name : qualifiedName + "." + name;
+
+      final ClSyntheticNamespace inner = getNamespace(innerName, project);
+      if (inner != null && !ResolveUtil.processElement(processor, inner)) return false;
+
+      for (PsiNamedElement element : getDeclaredElements(qualifiedName, name, project)) {
+        if (!ResolveUtil.processElement(processor, element)) return false;
+      }
+
+      final JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+      final PsiPackage aPackage = facade.findPackage(qualifiedName);
+      if (aPackage != null) {
+        final GlobalSearchScope scope = place.getResolveScope();
+        for (PsiClass clazz : aPackage.findClassByShortName(name, scope)) {
+          if (!ResolveUtil.processElement(processor, clazz)) return false;
+        }
+        if (inner == null) {
+          final PsiPackage pack = facade.findPackage(innerName);
+          if (pack != null && pack.getDirectories(scope).length > 0 &&
+              !ResolveUtil.processElement(processor, getNamespaceElement(pack))) {
+            return false;
+          }
+        }
+      }
+
+      return true;
+    }
+
   }
 
   public static ClSyntheticNamespace getNamespaceElement(PsiPackage pack) {
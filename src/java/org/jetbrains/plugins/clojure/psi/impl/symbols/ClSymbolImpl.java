@@ -239,7 +239,8 @@ public class ClSymbolImpl extends ClojurePsiElementImpl implements ClSymbol {
               if (element instanceof ClSyntheticNamespace) {
                 final String fqn = ((ClSyntheticNamespace) element).getQualifiedName();
                 // namespace declarations
-                for (PsiNamedElement named : NamespaceUtil.getDeclaredElements(fqn, element.getProject())) {
+                final String name = ResolveUtil.getHintName(processor);
+                for (PsiNamedElement named : NamespaceUtil.getDeclaredElements(fqn, name, element.getProject())) {
                   if (!ResolveUtil.processElement(processor, named)) return;
                 }
               }
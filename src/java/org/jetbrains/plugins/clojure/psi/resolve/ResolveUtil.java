@@ -9,6 +9,7 @@ import com.intellij.psi.PsiNamedElement;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.scope.NameHint;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.clojure.psi.ClojurePsiElement;
 import org.jetbrains.plugins.clojure.psi.api.ClListLike;
 import org.jetbrains.plugins.clojure.psi.api.symbols.ClSymbol;
@@ -44,14 +45,22 @@ public abstract class ResolveUtil {
     return true;
   }
 
+  /**
+   * @return name the processor is looking for, or null if it accepts elements with any name
+   */
+  @Nullable
+  public static String getHintName(PsiScopeProcessor processor) {
+    NameHint nameHint = processor.getHint(NameHint.KEY);
+    return nameHint == null ? null : nameHint.getName(ResolveState.initial());
+  }
+
   public static boolean processElement(PsiScopeProcessor processor, PsiNamedElement namedElement) {
     return processElement(processor, namedElement, ResolveState.initial());
   }
 
   public static boolean processElement(PsiScopeProcessor processor, PsiNamedElement namedElement, ResolveState state) {
     if (namedElement == null) return true;
-    NameHint nameHint = processor.getHint(NameHint.KEY);
-    String name = nameHint == null ? null : nameHint.getName(ResolveState.initial());
+    String name = getHintName(processor);
     String actualName = namedElement.getName();
     final String renamed = state.get(RENAMED_KEY);
     if (renamed != null) actualName = renamed;
@@ -5,8 +5,10 @@ import com.intellij.psi.stubs.NamedStub;
 import com.intellij.psi.stubs.StubBase;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.io.StringRef;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.clojure.psi.api.defs.ClDef;
-import org.jetbrains.plugins.clojure.psi.stubs.api.ClDefStub;
+
+import java.util.List;
 
 /**
  * @author ilyas
@@ -14,11 +16,14 @@ import org.jetbrains.plugins.clojure.psi.stubs.api.ClDefStub;
 public class ClDefStub extends StubBase<ClDef> implements NamedStub<ClDef> {
   private final StringRef myName;
   private final int myTextOffset;
+  private final StringRef myNamespace;
 
-  public ClDefStub(StubElement parent, StringRef name, final IStubElementType elementType, int textOffset) {
+  public ClDefStub(StubElement parent, StringRef name, final IStubElementType elementType, int textOffset,
+                   StringRef namespace) {
     super(parent, elementType);
     myName = name;
     myTextOffset = textOffset;
+    myNamespace = namespace;
   }
 
   public int getTextOffset() {
@@ -29,4 +34,36 @@ public class ClDefStub extends StubBase<ClDef> implements NamedStub<ClDef> {
     return StringRef.toString(myName);
   }
 
+  /**
+   * @return name of the namespace the definition belongs to, or null if it isn't preceded by a namespace form
+   */
+  @Nullable
+  public String getNamespace() {
+    return StringRef.toString(myNamespace);
+  }
+
+  /**
+   * Finds the namespace of a definition which is being added to <code>parentStub</code>: it is declared
+   * by the closest namespace form before the definition on the same or an outer level.
+   */
+  @Nullable
+  public static String findNamespace(StubElement parentStub) {
+    StubElement current = null;
+    for (StubElement level = parentStub; level != null; current = level, level = level.getParentStub()) {
+      final List<StubElement> children = level.getChildrenStubs();
+      for (int i = (current == null ? children.size() : children.lastIndexOf(current)) - 1; i >= 0; i--) {
+        final StubElement sibling = children.get(i);
+        if (sibling instanceof ClNsStub) {
+          final String name = ((ClNsStub) sibling).getName();
+          return name == null || name.length() == 0 ? null : name;
+        }
+        if (sibling instanceof ClDefStub) {
+          // a preceding definition on the same level belongs to the same namespace
+          return ((ClDefStub) sibling).getNamespace();
+        }
+      }
+    }
+    return null;
+  }
+
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import com.intellij.psi.stubs.StubBase;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.io.StringRef;
 import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNsDirectives;
 import org.jetbrains.plugins.clojure.psi.stubs.api.ClNsStub;
 
 /**
@@ -14,11 +15,14 @@ import org.jetbrains.plugins.clojure.psi.stubs.api.ClNsStub;
 public class ClNsStub extends StubBase<ClNs> implements NamedStub<ClNs> {
   private final StringRef myName;
   private final int myTextOffset;
+  private final ClNsDirectives myDirectives;
 
-  public ClNsStub(StubElement parent, StringRef name, final IStubElementType elementType, int textOffset) {
+  public ClNsStub(StubElement parent, StringRef name, final IStubElementType elementType, int textOffset,
+                  ClNsDirectives directives) {
     super(parent, elementType);
     myName = name;
     myTextOffset = textOffset;
+    myDirectives = directives;
   }
 
   public int getTextOffset() {
@@ -29,4 +33,8 @@ public class ClNsStub extends StubBase<ClNs> implements NamedStub<ClNs> {
     return StringRef.toString(myName);
   }
 
+  public ClNsDirectives getDirectives() {
+    return myDirectives;
+  }
+
 }
\ No newline at end of file
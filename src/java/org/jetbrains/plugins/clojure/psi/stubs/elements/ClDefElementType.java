@@ -5,6 +5,8 @@ import org.jetbrains.plugins.clojure.psi.impl.defs.ClDefImpl;
 import org.jetbrains.plugins.clojure.psi.api.defs.ClDef;
 import org.jetbrains.plugins.clojure.psi.stubs.api.ClDefStub;
 import org.jetbrains.plugins.clojure.psi.stubs.index.ClDefNameIndex;
+import org.jetbrains.plugins.clojure.psi.stubs.index.ClDefNamespaceIndex;
+import org.jetbrains.plugins.clojure.psi.stubs.index.ClDefQualifiedNameIndex;
 import org.jetbrains.plugins.clojure.parser.ClojureElementTypes;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.stubs.StubElement;
@@ -28,12 +30,14 @@ public class ClDefElementType extends ClStubElementType<ClDefStub, ClDef> {
   public void serialize(ClDefStub stub, StubOutputStream dataStream) throws IOException {
     dataStream.writeName(stub.getName());
     dataStream.writeInt(stub.getTextOffset());
+    dataStream.writeName(stub.getNamespace());
   }
 
   public ClDefStub deserialize(StubInputStream dataStream, StubElement parentStub) throws IOException {
     StringRef ref = dataStream.readName();
     int textOffset = dataStream.readInt();
-    return new ClDefStub(parentStub, ref, this, textOffset);
+    StringRef namespace = dataStream.readName();
+    return new ClDefStub(parentStub, ref, this, textOffset, namespace);
   }
 
   public PsiElement createElement(ASTNode node) {
@@ -45,7 +49,8 @@ public class ClDefElementType extends ClStubElementType<ClDefStub, ClDef> {
   }
 
   public ClDefStub createStub(ClDef psi, StubElement parentStub) {
-    return new ClDefStub(parentStub, StringRef.fromString(psi.getName()), ClojureElementTypes.DEF, psi.getTextOffset());
+    return new ClDefStub(parentStub, StringRef.fromString(psi.getName()), ClojureElementTypes.DEF, psi.getTextOffset(),
+        StringRef.fromString(ClDefStub.findNamespace(parentStub)));
   }
 
   @Override
@@ -53,6 +58,11 @@ public class ClDefElementType extends ClStubElementType<ClDefStub, ClDef> {
     final String name = stub.getName();
     if (name != null) {
       sink.occurrence(ClDefNameIndex.KEY, name);
+      final String namespace = stub.getNamespace();
+      if (namespace != null) {
+        sink.occurrence(ClDefNamespaceIndex.KEY, namespace);
+        sink.occurrence(ClDefQualifiedNameIndex.KEY, namespace + "/" + name);
+      }
     }
   }
 }
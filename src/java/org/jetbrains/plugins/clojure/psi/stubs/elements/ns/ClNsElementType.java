@@ -26,7 +26,8 @@ public class ClNsElementType extends ClNsElementTypeBase {
   }
 
   public ClNsStub createStub(ClNs psi, StubElement parentStub) {
-    return new ClNsStub(parentStub, StringRef.fromString(psi.getDefinedName()), ClojureElementTypes.NS, psi.getTextOffset());
+    return new ClNsStub(parentStub, StringRef.fromString(psi.getDefinedName()), ClojureElementTypes.NS, psi.getTextOffset(),
+        psi.getDirectives());
   }
 
 
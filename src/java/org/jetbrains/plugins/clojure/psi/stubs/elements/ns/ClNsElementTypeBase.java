@@ -8,11 +8,14 @@ import com.intellij.util.io.StringRef;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.plugins.clojure.psi.ClStubElementType;
 import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNsDirectives;
 import org.jetbrains.plugins.clojure.psi.stubs.api.ClNsStub;
+import org.jetbrains.plugins.clojure.psi.stubs.index.ClojureNsAliasIndex;
 import org.jetbrains.plugins.clojure.psi.stubs.index.ClojureNsNameIndex;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author ilyas
@@ -26,16 +29,83 @@ public abstract class ClNsElementTypeBase extends ClStubElementType<ClNsStub, Cl
   public void serialize(ClNsStub stub, StubOutputStream dataStream) throws IOException {
     dataStream.writeName(stub.getName());
     dataStream.writeInt(stub.getTextOffset());
+    serializeDirectives(stub.getDirectives(), dataStream);
   }
 
   public ClNsStub deserialize(StubInputStream dataStream, StubElement parentStub) throws IOException {
     StringRef ref = dataStream.readName();
     int textOffset = dataStream.readInt();
-    return new ClNsStub(parentStub, ref, this, textOffset);
+    ClNsDirectives directives = deserializeDirectives(dataStream);
+    return new ClNsStub(parentStub, ref, this, textOffset, directives);
+  }
+
+  private static void serializeDirectives(ClNsDirectives directives, StubOutputStream dataStream) throws IOException {
+    serializeMap(directives.getAliases(), dataStream);
+    dataStream.writeInt(directives.getRefers().size());
+    for (ClNsDirectives.Refer refer : directives.getRefers()) {
+      dataStream.writeName(refer.getNamespace());
+      serializeList(refer.getOnly(), dataStream);
+      serializeList(refer.getExcludes(), dataStream);
+      serializeMap(refer.getRenames(), dataStream);
+    }
+    serializeList(directives.getImports(), dataStream);
+  }
+
+  private static ClNsDirectives deserializeDirectives(StubInputStream dataStream) throws IOException {
+    ClNsDirectives directives = new ClNsDirectives();
+    int aliasCount = dataStream.readInt();
+    for (int i = 0; i < aliasCount; i++) {
+      directives.addAlias(readString(dataStream), readString(dataStream));
+    }
+    int referCount = dataStream.readInt();
+    for (int i = 0; i < referCount; i++) {
+      ClNsDirectives.Refer refer = new ClNsDirectives.Refer(readString(dataStream));
+      int onlyCount = dataStream.readInt();
+      for (int j = 0; j < onlyCount; j++) {
+        refer.addOnly(readString(dataStream));
+      }
+      int excludeCount = dataStream.readInt();
+      for (int j = 0; j < excludeCount; j++) {
+        refer.addExclude(readString(dataStream));
+      }
+      int renameCount = dataStream.readInt();
+      for (int j = 0; j < renameCount; j++) {
+        refer.addRename(readString(dataStream), readString(dataStream));
+      }
+      directives.addRefer(refer);
+    }
+    int importCount = dataStream.readInt();
+    for (int i = 0; i < importCount; i++) {
+      directives.addImport(readString(dataStream));
+    }
+    return directives;
+  }
+
+  private static void serializeList(List<String> list, StubOutputStream dataStream) throws IOException {
+    dataStream.writeInt(list.size());
+    for (String s : list) {
+      dataStream.writeName(s);
+    }
+  }
+
+  private static void serializeMap(Map<String, String> map, StubOutputStream dataStream) throws IOException {
+    dataStream.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      dataStream.writeName(entry.getKey());
+      dataStream.writeName(entry.getValue());
+    }
+  }
+
+  private static String readString(StubInputStream dataStream) throws IOException {
+    return StringRef.toString(dataStream.readName());
   }
 
   @Override
   public void indexStub(ClNsStub stub, IndexSink sink) {
+    for (String alias : stub.getDirectives().getAliases().keySet()) {
+      sink.occurrence(ClojureNsAliasIndex.KEY, alias);
+    }
+
     final String name = stub.getName();
     if (name != null && name.trim().length() > 0) {
       final List<String> parcels = StringUtil.split(name, ".");
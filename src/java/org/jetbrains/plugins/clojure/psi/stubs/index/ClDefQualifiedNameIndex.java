@@ -0,0 +1,21 @@
+package org.jetbrains.plugins.clojure.psi.stubs.index;
+
+import com.intellij.psi.stubs.StringStubIndexExtension;
+import com.intellij.psi.stubs.StubIndexKey;
+import org.jetbrains.plugins.clojure.psi.api.defs.ClDef;
+
+/**
+ * Definitions by their qualified names, like <code>clojure.core/map</code>
+ */
+public class ClDefQualifiedNameIndex extends StringStubIndexExtension<ClDef> {
+  public static final StubIndexKey<String, ClDef> KEY = StubIndexKey.createIndexKey("clj.def.qualified.name");
+
+  public StubIndexKey<String, ClDef> getKey() {
+    return KEY;
+  }
+
+  @Override
+  public int getVersion() {
+    return ClojureIndexVersion.VERSION;
+  }
+}
@@ -0,0 +1,21 @@
+package org.jetbrains.plugins.clojure.psi.stubs.index;
+
+import com.intellij.psi.stubs.StringStubIndexExtension;
+import com.intellij.psi.stubs.StubIndexKey;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
+
+/**
+ * Namespace forms by aliases they introduce with <code>:as</code>
+ */
+public class ClojureNsAliasIndex extends StringStubIndexExtension<ClNs> {
+  public static final StubIndexKey<String, ClNs> KEY = StubIndexKey.createIndexKey("clj.ns.alias");
+
+  public StubIndexKey<String, ClNs> getKey() {
+    return KEY;
+  }
+
+  @Override
+  public int getVersion() {
+    return ClojureIndexVersion.VERSION;
+  }
+}
@@ -23,7 +23,6 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import org.jetbrains.plugins.clojure.psi.api.ClBraced;
 import org.jetbrains.plugins.clojure.psi.api.ClList;
-import org.jetbrains.plugins.clojure.psi.api.ClojureFile;
 import org.jetbrains.plugins.clojure.psi.api.symbols.ClSymbol;
 import org.jetbrains.plugins.clojure.psi.ClojurePsiElement;
 import org.jetbrains.plugins.clojure.psi.impl.ClKeywordImpl;
@@ -222,33 +221,6 @@ public class ClojurePsiUtil {
     return children.length != 0 ? children[children.length - 1] : null;
   }
 
-  public static boolean isValidClojureExpression(String text, @NotNull Project project) {
-    if (text == null) return false;
-    text = text.trim();
-    final ClojurePsiFactory factory = ClojurePsiFactory.getInstance(project);
-    final ClojureFile file = factory.createClojureFileFromText(text);
-    final PsiElement[] children = file.getChildren();
-
-    if (children.length == 0) return false;
-    for (PsiElement child : children) {
-      if (containsSyntaxErrors(child)) {
-        return false;
-      }
-    }
-
-    return true;
-  }
-
-  private static boolean containsSyntaxErrors(PsiElement elem) {
-    if (elem instanceof PsiErrorElement) {
-      return true;
-    }
-    for (PsiElement child : elem.getChildren()) {
-      if (containsSyntaxErrors(child)) return true;
-    }
-    return false;
-  }
-
   public static boolean isStrictlyBefore(PsiElement e1, PsiElement e2) {
     final Trinity<PsiElement, PsiElement, PsiElement> result = findCommonParentAndLastChildren(e1, e2);
     return result.second.getTextRange().getStartOffset() < result.third.getTextRange().getStartOffset();
@@ -2,8 +2,17 @@ package org.jetbrains.plugins.clojure.repl;
 
 import com.intellij.execution.console.LanguageConsoleImpl;
 import com.intellij.execution.process.ConsoleHistoryModel;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.ex.DocumentEx;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.clojure.ClojureLanguage;
+import org.jetbrains.plugins.clojure.settings.ClojureProjectSettings;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author ilyas
@@ -14,6 +23,18 @@ public class ClojureConsole extends LanguageConsoleImpl {
   private final String myNReplHost;
   private final String myNReplPort;
   private ClojureConsoleExecuteActionHandler myExecuteHandler;
+  private ClojureNReplClient myNReplClient;
+  private final ClojureConsoleOutputBuffer myOutputBuffer;
+  private final ClojureInputBalance myInputBalance;
+  // hashes of top-level forms last loaded in this console, by file path
+  private final Map<String, Set<String>> myLoadedForms = new HashMap<String, Set<String>>();
+  // file and hashes of forms sent to the REPL by the last load, and the line its command prints if it fails
+  private String mySentFormsPath;
+  private Set<String> mySentForms;
+  private String myLoadFailure;
+  // error output since the last line break, only lines as long as the failure of a load are of interest
+  private final StringBuilder myErrorLine = new StringBuilder();
+  private static final int MAX_ERROR_LINE = 4096;
 
   public ClojureConsole(Project project,
                         String title,
@@ -25,6 +46,11 @@ public class ClojureConsole extends LanguageConsoleImpl {
     myHistoryModel = historyModel;
     myNReplHost = nReplHost;
     myNReplPort = nReplPort;
+    final ClojureProjectSettings settings = ClojureProjectSettings.getInstance(project);
+    myOutputBuffer = new ClojureConsoleOutputBuffer(this, settings.replOutputLimit);
+    // the oldest history is dropped once the limit is reached
+    ((DocumentEx) getHistoryViewer().getDocument()).setCyclicBufferSize(settings.replHistoryLimit);
+    myInputBalance = new ClojureInputBalance(getConsoleEditor().getDocument(), this);
   }
 
   public ConsoleHistoryModel getHistoryModel() {
@@ -39,6 +65,65 @@ public class ClojureConsole extends LanguageConsoleImpl {
     this.myExecuteHandler = handler;
   }
 
+  public ClojureConsoleOutputBuffer getOutputBuffer() {
+    return myOutputBuffer;
+  }
+
+  public ClojureInputBalance getInputBalance() {
+    return myInputBalance;
+  }
+
+  @Nullable
+  public Set<String> getLoadedForms(String path) {
+    return myLoadedForms.get(path);
+  }
+
+  /**
+   * Remembers forms of a file as loaded in the console. If the REPL prints <code>failure</code> to the error stream,
+   * the sent forms are forgotten again, so they're sent by the next load.
+   *
+   * @param hashes  all forms of the file
+   * @param sent    forms sent to the REPL by this load
+   * @param failure line the load command prints to the error stream if the evaluation fails
+   */
+  public void setLoadedForms(String path, Set<String> hashes, Set<String> sent, String failure) {
+    myLoadedForms.put(path, hashes);
+    mySentFormsPath = path;
+    mySentForms = sent;
+    myLoadFailure = failure;
+  }
+
+  /**
+   * Called with the text the REPL prints to the error stream. The text is handled in the event dispatch thread,
+   * after a load which was in progress has remembered its forms.
+   */
+  public void errorOutput(final String text) {
+    ApplicationManager.getApplication().invokeLater(new Runnable() {
+      public void run() {
+        for (int i = 0; i < text.length(); i++) {
+          final char c = text.charAt(i);
+          if (c == '\n') {
+            errorLine(myErrorLine.toString());
+            myErrorLine.setLength(0);
+          } else if (myErrorLine.length() < MAX_ERROR_LINE) {
+            myErrorLine.append(c);
+          }
+        }
+      }
+    });
+  }
+
+  private void errorLine(String line) {
+    if (mySentForms == null || !line.trim().equals(myLoadFailure)) return;
+    final Set<String> loaded = myLoadedForms.get(mySentFormsPath);
+    if (loaded != null) {
+      loaded.removeAll(mySentForms);
+    }
+    mySentFormsPath = null;
+    mySentForms = null;
+    myLoadFailure = null;
+  }
+
   public String getNReplPort() {
     return myNReplPort;
   }
@@ -46,4 +131,32 @@ public class ClojureConsole extends LanguageConsoleImpl {
   public String getNReplHost() {
     return myNReplHost;
   }
+
+  /**
+   * @return client connected to the nREPL server of this console, or null if no server is configured
+   */
+  @Nullable
+  public synchronized ClojureNReplClient getNReplClient() {
+    if (myNReplClient == null && myNReplHost != null) {
+      final int port = StringUtil.parseInt(myNReplPort, -1);
+      if (port > 0) {
+        myNReplClient = new ClojureNReplClient(myNReplHost, port);
+      }
+    }
+    return myNReplClient;
+  }
+
+  public synchronized void closeNReplClient() {
+    if (myNReplClient != null) {
+      myNReplClient.close();
+      myNReplClient = null;
+    }
+  }
+
+  @Override
+  public void dispose() {
+    closeNReplClient();
+    myOutputBuffer.dispose();
+    super.dispose();
+  }
 }
@@ -3,6 +3,7 @@ package org.jetbrains.plugins.clojure.repl;
 import com.intellij.execution.console.LanguageConsoleImpl;
 import com.intellij.execution.process.ConsoleHistoryModel;
 import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.lang.FileASTNode;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.Result;
@@ -16,7 +17,6 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.impl.source.codeStyle.IndentHelper;
 import com.intellij.psi.impl.source.codeStyle.IndentHelperImpl;
 import org.jetbrains.plugins.clojure.file.ClojureFileType;
-import org.jetbrains.plugins.clojure.psi.util.ClojurePsiUtil;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -90,10 +90,10 @@ public class ClojureConsoleExecuteActionHandler {
       return;
     }
 
-    final String candidate = text.trim();
-
-    // S-expression contains no syntax errors
-    if (ClojurePsiUtil.isValidClojureExpression(candidate, myProject) || "".equals(candidate)) {
+    // all forms are complete, or there are none
+    final ClojureInputBalance balance = console.getInputBalance();
+    if (StringUtil.isEmptyOrSpaces(text) ||
+        (document == balance.getDocument() ? balance.isComplete() : ClojureInputBalance.isComplete(text))) {
       execute(console, consoleHistoryModel);
     } else {
       console.setInputText(text + "\n");
@@ -115,17 +115,40 @@ public class ClojureConsoleExecuteActionHandler {
       consoleHistoryModel.addToHistory(text);
     }
     // Send to interpreter / server
+    // output of the process is assigned to evaluations by prompts, see ClojureConsoleProcessHandler
     if (languageConsole.getNReplHost() != null) {
-      text = "(do (use '[clojure.tools.nrepl :as repl])" +
-          " (with-open [conn (repl/connect :host \"" + languageConsole.getNReplHost() +
-          "\" :port " + languageConsole.getNReplPort() + ")]\n" +
-          "  (-> (repl/client conn 1000)\n" +
-          "    (repl/message {:op :eval :code \"" + text + "\"})\n" +
-          "    repl/response-values)))";
+      languageConsole.getOutputBuffer().startEvaluation();
+      evaluateWithNRepl(languageConsole, text);
+      return;
     }
     processLine(text);
   }
 
+  private static void evaluateWithNRepl(final ClojureConsole console, String text) {
+    final ClojureNReplClient client = console.getNReplClient();
+    if (client == null) {
+      ClojureConsoleHighlightingUtil.processOutput(console, "Invalid nREPL port: " + console.getNReplPort() + "\n",
+          ProcessOutputTypes.STDERR);
+      return;
+    }
+    client.evaluate(text, new ClojureNReplClient.ResponseListener() {
+      public void out(String out) {
+        ClojureConsoleHighlightingUtil.processOutput(console, out, ProcessOutputTypes.STDOUT);
+      }
+
+      public void err(String err) {
+        ClojureConsoleHighlightingUtil.processOutput(console, err, ProcessOutputTypes.STDERR);
+      }
+
+      public void value(String value) {
+        ClojureConsoleHighlightingUtil.processOutput(console, value + "\n", ProcessOutputTypes.STDOUT);
+      }
+
+      public void ns(String ns) {
+        console.setPrompt(ns + "=> ");
+      }
+    });
+  }
 
   private void scrollDown(final Editor currentEditor) {
     ApplicationManager.getApplication().invokeLater(new Runnable() {
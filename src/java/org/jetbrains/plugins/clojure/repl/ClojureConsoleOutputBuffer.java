@@ -0,0 +1,150 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import com.intellij.execution.console.LanguageConsoleImpl;
+import com.intellij.execution.ui.ConsoleViewContentType;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.plugins.clojure.ClojureBundle;
+
+import java.io.*;
+
+/**
+ * Limits the amount of output one evaluation prints to the console history.
+ * <p/>
+ * Output above the limit is written to a spill file, and the history shows a placeholder instead.
+ * The hidden part can be printed on demand, one limit-sized page at a time, with {@link #expand()}.
+ * Only the hidden output of the last evaluation which exceeded the limit is kept.
+ */
+public class ClojureConsoleOutputBuffer {
+  private static final Logger LOG = Logger.getInstance(ClojureConsoleOutputBuffer.class.getName());
+
+  private final LanguageConsoleImpl myConsole;
+  private final int myLimit;
+
+  private int myPrinted;
+  private boolean myOverflow;
+  private File mySpillFile;
+  private Writer mySpillWriter;
+  private Reader mySpillReader;
+  private long mySpilled;
+  private long myExpanded;
+
+  /**
+   * @param limit maximum number of characters printed for one evaluation
+   */
+  public ClojureConsoleOutputBuffer(LanguageConsoleImpl console, int limit) {
+    myConsole = console;
+    myLimit = limit;
+  }
+
+  /**
+   * Resets the limit. Hidden output of previous evaluations stays available until another evaluation exceeds it.
+   */
+  public synchronized void startEvaluation() {
+    myPrinted = 0;
+    myOverflow = false;
+  }
+
+  public synchronized void print(String text, ConsoleViewContentType type) {
+    if (!myOverflow) {
+      final int available = myLimit - myPrinted;
+      if (text.length() <= available) {
+        myPrinted += text.length();
+        LanguageConsoleImpl.printToConsole(myConsole, text, type, null);
+        return;
+      }
+      if (available > 0) {
+        LanguageConsoleImpl.printToConsole(myConsole, text.substring(0, available), type, null);
+        myPrinted = myLimit;
+        text = text.substring(available);
+      }
+      dropSpillFile();
+      if (!createSpillFile()) return;
+      myOverflow = true;
+      LanguageConsoleImpl.printToConsole(myConsole, "\n" + ClojureBundle.message("repl.output.truncated", myLimit) + "\n",
+          ConsoleViewContentType.SYSTEM_OUTPUT, null);
+    }
+    if (mySpillWriter == null) return;
+    try {
+      mySpillWriter.write(text);
+      mySpilled += text.length();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      dropSpillFile();
+    }
+  }
+
+  public synchronized boolean hasHiddenOutput() {
+    return mySpillWriter != null && myExpanded < mySpilled;
+  }
+
+  /**
+   * Prints the next page of hidden output
+   */
+  public synchronized void expand() {
+    if (!hasHiddenOutput()) return;
+    try {
+      mySpillWriter.flush();
+      if (mySpillReader == null) {
+        mySpillReader = new InputStreamReader(new FileInputStream(mySpillFile), "UTF-8");
+      }
+      final char[] page = new char[(int) Math.min(myLimit, mySpilled - myExpanded)];
+      int read = 0;
+      while (read < page.length) {
+        final int n = mySpillReader.read(page, read, page.length - read);
+        if (n == -1) break;
+        read += n;
+      }
+      myExpanded += read;
+      LanguageConsoleImpl.printToConsole(myConsole, new String(page, 0, read), ConsoleViewContentType.NORMAL_OUTPUT, null);
+      if (myExpanded < mySpilled) {
+        LanguageConsoleImpl.printToConsole(myConsole, "\n" + ClojureBundle.message("repl.output.hidden", mySpilled - myExpanded) + "\n",
+            ConsoleViewContentType.SYSTEM_OUTPUT, null);
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      dropSpillFile();
+    }
+  }
+
+  public synchronized void dispose() {
+    dropSpillFile();
+  }
+
+  private boolean createSpillFile() {
+    try {
+      mySpillFile = FileUtil.createTempFile("clojure-repl", ".out", true);
+      mySpillWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mySpillFile), "UTF-8"));
+      return true;
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      dropSpillFile();
+      return false;
+    }
+  }
+
+  private void dropSpillFile() {
+    closeQuietly(mySpillWriter);
+    closeQuietly(mySpillReader);
+    if (mySpillFile != null) {
+      FileUtil.delete(mySpillFile);
+    }
+    mySpillFile = null;
+    mySpillWriter = null;
+    mySpillReader = null;
+    mySpilled = 0;
+    myExpanded = 0;
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable == null) return;
+    try {
+      closeable.close();
+    }
+    catch (IOException ignore) {
+    }
+  }
+}
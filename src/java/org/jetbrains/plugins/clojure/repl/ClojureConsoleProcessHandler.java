@@ -2,40 +2,51 @@ package org.jetbrains.plugins.clojure.repl;
 
 import com.intellij.execution.console.LanguageConsoleImpl;
 import com.intellij.execution.process.ColoredProcessHandler;
+import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.CharsetToolkit;
 
-import java.util.regex.Matcher;
-
 /**
  * @author ilyas
  */
 public class ClojureConsoleProcessHandler extends ColoredProcessHandler {
 
   private final LanguageConsoleImpl myLanguageConsole;
+  private final ClojurePromptTokenizer myPromptTokenizer;
 
-  public ClojureConsoleProcessHandler(Process process, String commandLine, LanguageConsoleImpl console) {
+  public ClojureConsoleProcessHandler(Process process, String commandLine, final LanguageConsoleImpl console) {
     super(process, commandLine, CharsetToolkit.UTF8_CHARSET);
     myLanguageConsole = console;
+    myPromptTokenizer = new ClojurePromptTokenizer(new ClojurePromptTokenizer.Listener() {
+      public void output(String text) {
+        ClojureConsoleHighlightingUtil.processOutput(console, text, ProcessOutputTypes.STDOUT);
+      }
+
+      public void prompt(String prompt) {
+        console.setPrompt(prompt);
+        // the REPL is ready to read the next form, so the following output belongs to the next evaluation
+        if (console instanceof ClojureConsole) {
+          ((ClojureConsole) console).getOutputBuffer().startEvaluation();
+        }
+      }
+    });
   }
 
   @Override
   protected void textAvailable(String text, Key attributes) {
-    final String string = processPrompts(myLanguageConsole, StringUtil.convertLineSeparators(text));
-    ClojureConsoleHighlightingUtil.processOutput(myLanguageConsole, string, attributes);
+    final String string = StringUtil.convertLineSeparators(text);
+    if (attributes == ProcessOutputTypes.STDERR || attributes == ProcessOutputTypes.SYSTEM) {
+      ClojureConsoleHighlightingUtil.processOutput(myLanguageConsole, string, attributes);
+    } else {
+      myPromptTokenizer.feed(string);
+    }
   }
 
-  private static String processPrompts(final LanguageConsoleImpl console, String text) {
-    if (text != null && text.matches(ClojureConsoleHighlightingUtil.LINE_WITH_PROMPT)) {
-      final Matcher matcher = ClojureConsoleHighlightingUtil.CLOJURE_PROMPT_PATTERN.matcher(text);
-      matcher.find();
-      final String prefix = matcher.group();
-      final String trimmed = StringUtil.trimStart(text, prefix).trim();
-      console.setPrompt(prefix + " ");
-      return trimmed;
-    }
-    return text;
+  @Override
+  protected void onOSProcessTerminated(int exitCode) {
+    myPromptTokenizer.flush();
+    super.onOSProcessTerminated(exitCode);
   }
 
   public LanguageConsoleImpl getLanguageConsole() {
@@ -0,0 +1,54 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Live Clojure consoles of the project. Consoles are registered when started and forgotten when their process
+ * terminates, so REPL actions can find the active console without looking through run contents.
+ * <p/>
+ * The active console is the most recently started one which is still running. Performed actions prefer
+ * the console selected in the Run tool window, see
+ * {@link org.jetbrains.plugins.clojure.repl.actions.ClojureConsoleActionBase#findRunningClojureConsole}.
+ */
+public class ClojureConsoleRegistry {
+  private final List<ClojureConsoleProcessHandler> myHandlers = new ArrayList<ClojureConsoleProcessHandler>();
+  private volatile ClojureConsoleProcessHandler myActive;
+
+  public static ClojureConsoleRegistry getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, ClojureConsoleRegistry.class);
+  }
+
+  public void register(@NotNull final ClojureConsoleProcessHandler handler) {
+    handler.addProcessListener(new ProcessAdapter() {
+      @Override
+      public void processTerminated(ProcessEvent event) {
+        unregister(handler);
+      }
+    });
+    synchronized (myHandlers) {
+      if (handler.isProcessTerminated()) return;
+      myHandlers.add(handler);
+      myActive = handler;
+    }
+  }
+
+  private void unregister(@NotNull ClojureConsoleProcessHandler handler) {
+    synchronized (myHandlers) {
+      myHandlers.remove(handler);
+      myActive = myHandlers.isEmpty() ? null : myHandlers.get(myHandlers.size() - 1);
+    }
+  }
+
+  @Nullable
+  public ClojureConsoleProcessHandler getActiveConsole() {
+    return myActive;
+  }
+}
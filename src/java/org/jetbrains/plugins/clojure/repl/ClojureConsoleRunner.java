@@ -121,7 +121,9 @@ public class ClojureConsoleRunner {
     final Process process = createProcess(myProvider);
     // !!! do not change order!!!
     myConsoleView = createConsoleView(module);
-    myProcessHandler = new ClojureConsoleProcessHandler(process, myProvider.getCommandLineString(), getLanguageConsole());
+    final ClojureConsoleProcessHandler processHandler =
+        new ClojureConsoleProcessHandler(process, myProvider.getCommandLineString(), getLanguageConsole());
+    myProcessHandler = processHandler;
     myConsoleExecuteActionHandler = new ClojureConsoleExecuteActionHandler(getProcessHandler(), getProject(), false);
     getLanguageConsole().setExecuteHandler(myConsoleExecuteActionHandler);
 
@@ -133,6 +135,7 @@ public class ClojureConsoleRunner {
       public void processTerminated(ProcessEvent event) {
         myRunAction.getTemplatePresentation().setEnabled(false);
         myConsoleView.getConsole().setPrompt("");
+        myConsoleView.getConsole().closeNReplClient();
         myConsoleView.getConsole().getConsoleEditor().setRendererMode(true);
         ApplicationManager.getApplication().invokeLater(new Runnable() {
           public void run() {
@@ -144,6 +147,7 @@ public class ClojureConsoleRunner {
 
     // Attach a console view to the process
     myConsoleView.attachToProcess(myProcessHandler);
+    ClojureConsoleRegistry.getInstance(getProject()).register(processHandler);
 
     // Runner creating
     final Executor defaultExecutor = ExecutorRegistry.getInstance().getExecutorById(DefaultRunExecutor.EXECUTOR_ID);
@@ -226,6 +230,8 @@ public class ClojureConsoleRunner {
     myRunAction = executionActions.get(0);
     actionList.addAll(executionActions);
 
+    actionList.add(new ClojureShowHiddenOutputAction(getLanguageConsole()));
+
     actionList.add(new ToggleUseSoftWrapsToolbarAction(SoftWrapAppliancePlaces.CONSOLE) {
       @Override
       public void setSelected(AnActionEvent e, boolean state) {
@@ -441,12 +447,16 @@ public class ClojureConsoleRunner {
 
     final GeneralCommandLine cmdline = createCommandLine(myModule, getWorkingDir());
 
-    Process process = null;
-    try {
-      process = cmdline.createProcess();
-    } catch (Exception e) {
-      ExecutionHelper.showErrors(getProject(), Arrays.<Exception>asList(e), REPL_TITLE, null);
+    final ClojureReplProcessPool pool = ClojureReplProcessPool.getInstance(getProject());
+    Process process = pool.take(myModule, cmdline);
+    if (process == null) {
+      try {
+        process = cmdline.createProcess();
+      } catch (Exception e) {
+        ExecutionHelper.showErrors(getProject(), Arrays.<Exception>asList(e), REPL_TITLE, null);
+      }
     }
+    pool.prepare(myModule, cmdline);
 
     return process;
 
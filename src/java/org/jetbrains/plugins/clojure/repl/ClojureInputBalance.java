@@ -0,0 +1,202 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.clojure.lexer.ClojureFlexLexer;
+import org.jetbrains.plugins.clojure.lexer.ClojureTokenTypes;
+
+/**
+ * Tracks whether the text of a console input document consists of complete forms, i.e. every delimiter is closed
+ * by the matching one, every string is terminated and no reader macro misses its form.
+ * <p/>
+ * The document is lexed with {@link ClojureFlexLexer}, remembering the stack of open delimiters before every token.
+ * After a change only the text from the changed token on is lexed again, so typing at the end of the input costs
+ * a few tokens and the check itself is a field read.
+ */
+public class ClojureInputBalance {
+  private static final TokenSet OPENING = TokenSet.create(ClojureTokenTypes.LEFT_PAREN, ClojureTokenTypes.LEFT_SQUARE,
+      ClojureTokenTypes.LEFT_CURLY);
+  private static final TokenSet CLOSING = TokenSet.create(ClojureTokenTypes.RIGHT_PAREN, ClojureTokenTypes.RIGHT_SQUARE,
+      ClojureTokenTypes.RIGHT_CURLY);
+  private static final TokenSet PREFIXES = TokenSet.create(ClojureTokenTypes.QUOTE, ClojureTokenTypes.BACKQUOTE,
+      ClojureTokenTypes.SHARP, ClojureTokenTypes.SHARPUP, ClojureTokenTypes.UP, ClojureTokenTypes.TILDA,
+      ClojureTokenTypes.AT, ClojureTokenTypes.TILDAAT);
+  private static final TokenSet INSIGNIFICANT = TokenSet.orSet(ClojureTokenTypes.WHITESPACE_SET, ClojureTokenTypes.COMMENTS);
+
+  /**
+   * Open delimiters, innermost first. Frames are never changed, so stacks before different tokens share their tails.
+   */
+  private static class Frame {
+    private final IElementType myOpening;
+    private final Frame myParent;
+
+    private Frame(IElementType opening, Frame parent) {
+      myOpening = opening;
+      myParent = parent;
+    }
+  }
+
+  private static class State {
+    private Frame myStack;
+    private boolean myError;
+    private IElementType myLastSignificant;
+  }
+
+  private final Document myDocument;
+  private final Lexer myLexer = new ClojureFlexLexer();
+
+  // state before every token
+  private int myTokenCount;
+  private int[] myStarts = new int[64];
+  private int[] myLexerStates = new int[64];
+  private Frame[] myStacks = new Frame[64];
+  private boolean[] myErrors = new boolean[64];
+  private IElementType[] myLastSignificant = new IElementType[64];
+
+  // state at the end of the document
+  private final State myState = new State();
+
+  public ClojureInputBalance(@NotNull Document document, @NotNull Disposable parent) {
+    myDocument = document;
+    document.addDocumentListener(new DocumentAdapter() {
+      @Override
+      public void documentChanged(DocumentEvent e) {
+        relex(e.getOffset());
+      }
+    }, parent);
+    relex(0);
+  }
+
+  @NotNull
+  public Document getDocument() {
+    return myDocument;
+  }
+
+  /**
+   * @return true if the document contains forms and can be sent to the REPL as it is
+   */
+  public boolean isComplete() {
+    return isComplete(myState);
+  }
+
+  /**
+   * Checks arbitrary text, lexing all of it
+   */
+  public static boolean isComplete(@NotNull CharSequence text) {
+    final State state = new State();
+    final Lexer lexer = new ClojureFlexLexer();
+    lexer.start(text);
+    while (lexer.getTokenType() != null) {
+      advance(state, lexer.getTokenType());
+      lexer.advance();
+    }
+    return isComplete(state);
+  }
+
+  private static boolean isComplete(State state) {
+    // input of whitespace and comments only has no form to send
+    return state.myStack == null && !state.myError &&
+        state.myLastSignificant != null && !PREFIXES.contains(state.myLastSignificant);
+  }
+
+  private void relex(int changeOffset) {
+    // the change may alter the tokens right before it, and the lexer can only be restarted in its initial state
+    int index = findTokenAt(Math.max(0, changeOffset - 1)) - 1;
+    while (index > 0 && myLexerStates[index] != 0) {
+      index--;
+    }
+
+    final int start;
+    if (index < 0 || index >= myTokenCount) {
+      index = 0;
+      start = 0;
+      myState.myStack = null;
+      myState.myError = false;
+      myState.myLastSignificant = null;
+    } else {
+      start = myStarts[index];
+      myState.myStack = myStacks[index];
+      myState.myError = myErrors[index];
+      myState.myLastSignificant = myLastSignificant[index];
+    }
+    myTokenCount = index;
+
+    final CharSequence text = myDocument.getCharsSequence();
+    myLexer.start(text, start, text.length(), 0);
+    while (myLexer.getTokenType() != null) {
+      ensureCapacity(myTokenCount + 1);
+      myStarts[myTokenCount] = myLexer.getTokenStart();
+      myLexerStates[myTokenCount] = myLexer.getState();
+      myStacks[myTokenCount] = myState.myStack;
+      myErrors[myTokenCount] = myState.myError;
+      myLastSignificant[myTokenCount] = myState.myLastSignificant;
+      myTokenCount++;
+      advance(myState, myLexer.getTokenType());
+      myLexer.advance();
+    }
+  }
+
+  private static void advance(State state, IElementType type) {
+    if (INSIGNIFICANT.contains(type)) return;
+    if (OPENING.contains(type)) {
+      state.myStack = new Frame(type, state.myStack);
+    } else if (CLOSING.contains(type)) {
+      if (state.myStack == null || !matches(state.myStack.myOpening, type)) {
+        state.myError = true;
+      } else {
+        state.myStack = state.myStack.myParent;
+      }
+    } else if (type == ClojureTokenTypes.WRONG_STRING_LITERAL) {
+      state.myError = true;
+    }
+    state.myLastSignificant = type;
+  }
+
+  private static boolean matches(IElementType opening, IElementType closing) {
+    return opening == ClojureTokenTypes.LEFT_PAREN && closing == ClojureTokenTypes.RIGHT_PAREN ||
+        opening == ClojureTokenTypes.LEFT_SQUARE && closing == ClojureTokenTypes.RIGHT_SQUARE ||
+        opening == ClojureTokenTypes.LEFT_CURLY && closing == ClojureTokenTypes.RIGHT_CURLY;
+  }
+
+  /**
+   * @return index of the last token starting at or before <code>offset</code>, or -1
+   */
+  private int findTokenAt(int offset) {
+    int low = 0;
+    int high = myTokenCount - 1;
+    int result = -1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (myStarts[mid] <= offset) {
+        result = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return result;
+  }
+
+  private void ensureCapacity(int size) {
+    if (size <= myStarts.length) return;
+    final int newSize = Math.max(size, myStarts.length * 2);
+    myStarts = ArrayUtil.realloc(myStarts, newSize);
+    myLexerStates = ArrayUtil.realloc(myLexerStates, newSize);
+    final Frame[] stacks = new Frame[newSize];
+    System.arraycopy(myStacks, 0, stacks, 0, myTokenCount);
+    myStacks = stacks;
+    final boolean[] errors = new boolean[newSize];
+    System.arraycopy(myErrors, 0, errors, 0, myTokenCount);
+    myErrors = errors;
+    final IElementType[] lastSignificant = new IElementType[newSize];
+    System.arraycopy(myLastSignificant, 0, lastSignificant, 0, myTokenCount);
+    myLastSignificant = lastSignificant;
+  }
+}
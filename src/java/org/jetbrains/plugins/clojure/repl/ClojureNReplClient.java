@@ -0,0 +1,139 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import clojure.lang.ISeq;
+import clojure.lang.Keyword;
+import clojure.tools.nrepl.Connection;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Connection to an nREPL server which is kept open for the whole life of a console, together with
+ * a session on it, so evaluations don't reconnect and share the session's namespace and vars.
+ * <p/>
+ * Evaluations are sent one by one in the order they were requested; responses are passed to the
+ * listener as they arrive.
+ */
+public class ClojureNReplClient {
+  private static final Logger LOG = Logger.getInstance(ClojureNReplClient.class.getName());
+
+  private final String myHost;
+  private final int myPort;
+  private final ExecutorService myExecutor;
+
+  private volatile Connection myConnection;
+  private volatile boolean myClosed;
+  private String mySession;
+
+  public interface ResponseListener {
+    void out(String text);
+
+    void err(String text);
+
+    void value(String value);
+
+    /**
+     * @param ns namespace of the session after an evaluation
+     */
+    void ns(String ns);
+  }
+
+  public ClojureNReplClient(@NotNull String host, int port) {
+    myHost = host;
+    myPort = port;
+    myExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(@NotNull Runnable r) {
+        final Thread thread = new Thread(r, "nREPL client " + myHost + ":" + myPort);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  public void evaluate(@NotNull final String code, @NotNull final ResponseListener listener) {
+    if (myClosed) return;
+    myExecutor.execute(new Runnable() {
+      public void run() {
+        try {
+          if (myConnection == null) {
+            connect();
+          }
+          final Connection.Response response = myConnection.sendSession(mySession, "op", "eval", "code", code);
+          for (ISeq messages = response.seq(); messages != null; messages = messages.next()) {
+            handleMessage((Map) messages.first(), listener);
+          }
+        }
+        catch (Exception e) {
+          if (myClosed) return;
+          listener.err("Failed to evaluate with nREPL at " + myHost + ":" + myPort + ": " + e.getMessage() + "\n");
+          disconnect();
+        }
+      }
+    });
+  }
+
+  private void connect() throws Exception {
+    final Thread thread = Thread.currentThread();
+    final ClassLoader loader = thread.getContextClassLoader();
+    // nREPL namespaces are loaded by Clojure runtime through the context class loader
+    thread.setContextClassLoader(ClojureNReplClient.class.getClassLoader());
+    try {
+      myConnection = new Connection("nrepl://" + myHost + ":" + myPort);
+      mySession = myConnection.newSession(null);
+    }
+    catch (Exception e) {
+      disconnect();
+      throw e;
+    }
+    finally {
+      thread.setContextClassLoader(loader);
+    }
+  }
+
+  private void disconnect() {
+    final Connection connection = myConnection;
+    if (connection != null) {
+      try {
+        connection.close();
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+    }
+    myConnection = null;
+    mySession = null;
+  }
+
+  private static void handleMessage(Map message, ResponseListener listener) {
+    final String out = getString(message, "out");
+    if (out != null) listener.out(out);
+    final String err = getString(message, "err");
+    if (err != null) listener.err(err);
+    final String value = getString(message, "value");
+    if (value != null) listener.value(value);
+    final String ns = getString(message, "ns");
+    if (ns != null) listener.ns(ns);
+  }
+
+  @Nullable
+  private static String getString(Map message, String key) {
+    Object value = message.get(Keyword.intern(key));
+    if (value == null) value = message.get(key);
+    return value == null ? null : value.toString();
+  }
+
+  /**
+   * Closes the connection, interrupting an evaluation which is waiting for responses
+   */
+  public void close() {
+    myClosed = true;
+    myExecutor.shutdownNow();
+    disconnect();
+  }
+}
@@ -0,0 +1,134 @@
+package org.jetbrains.plugins.clojure.repl;
+
+/**
+ * Splits standard output of a REPL process into prompts like <code>user=> </code> and the output of evaluations.
+ * <p/>
+ * Text is consumed as it arrives, so a prompt may be split between any number of chunks. A prompt is recognized
+ * at the beginning of a line only. Characters which may still turn out to be a prompt are held back until
+ * it is clear whether they are, and are never longer than {@link #MAX_PROMPT_LENGTH}.
+ */
+public class ClojurePromptTokenizer {
+  static final int MAX_PROMPT_LENGTH = 256;
+
+  private static final int LINE_START = 0;
+  private static final int IN_LINE = 1;
+  private static final int IN_PROMPT = 2;
+
+  public interface Listener {
+    void output(String text);
+
+    /**
+     * Called when evaluation output ends with a prompt
+     *
+     * @param prompt prompt text including the trailing space
+     */
+    void prompt(String prompt);
+  }
+
+  private final Listener myListener;
+
+  private int myState = LINE_START;
+  // part of a possible prompt which came with previous chunks
+  private final StringBuilder myPending = new StringBuilder();
+  private int myPromptLength;
+  private char myLastChar;
+  private char myPreviousChar;
+
+  public ClojurePromptTokenizer(Listener listener) {
+    myListener = listener;
+  }
+
+  public synchronized void feed(String text) {
+    int outputStart = 0;
+    int promptStart = 0;
+    final int length = text.length();
+    for (int i = 0; i < length; i++) {
+      final char c = text.charAt(i);
+      switch (myState) {
+        case IN_LINE:
+          if (c == '\n') myState = LINE_START;
+          break;
+        case LINE_START:
+          if (isPromptStart(c)) {
+            myState = IN_PROMPT;
+            promptStart = i;
+            myPromptLength = 1;
+            myPreviousChar = 0;
+            myLastChar = c;
+          } else if (c != '\n') {
+            myState = IN_LINE;
+          }
+          break;
+        case IN_PROMPT:
+          if (c == ' ' && myPromptLength > 2 && myPreviousChar == '=' && myLastChar == '>') {
+            output(text, outputStart, promptStart);
+            myListener.prompt(myPending.append(text, promptStart, i + 1).toString());
+            myPending.setLength(0);
+            outputStart = i + 1;
+            myState = LINE_START;
+          } else if (isPromptPart(c) && myPromptLength < MAX_PROMPT_LENGTH) {
+            myPromptLength++;
+            myPreviousChar = myLastChar;
+            myLastChar = c;
+          } else {
+            // not a prompt, held back characters are output
+            if (myPending.length() > 0) {
+              myListener.output(myPending.toString());
+              myPending.setLength(0);
+            }
+            myState = c == '\n' ? LINE_START : IN_LINE;
+          }
+          break;
+      }
+    }
+    if (myState == IN_PROMPT) {
+      output(text, outputStart, promptStart);
+      myPending.append(text, promptStart, length);
+    } else {
+      output(text, outputStart, length);
+    }
+  }
+
+  /**
+   * Passes held back characters as output, e.g. when the process terminates
+   */
+  public synchronized void flush() {
+    if (myPending.length() > 0) {
+      myListener.output(myPending.toString());
+      myPending.setLength(0);
+    }
+    myState = LINE_START;
+  }
+
+  private void output(String text, int start, int end) {
+    if (start < end) {
+      myListener.output(start == 0 && end == text.length() ? text : text.substring(start, end));
+    }
+  }
+
+  private static boolean isPromptStart(char c) {
+    return isPromptPart(c) && !Character.isDigit(c);
+  }
+
+  private static boolean isPromptPart(char c) {
+    if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9') return true;
+    switch (c) {
+      case '_':
+      case '-':
+      case '*':
+      case '.':
+      case '+':
+      case '=':
+      case '&':
+      case '<':
+      case '>':
+      case '$':
+      case '/':
+      case '?':
+      case '!':
+        return true;
+      default:
+        return false;
+    }
+  }
+}
@@ -40,7 +40,6 @@ import com.intellij.openapi.roots.OrderEntry;
 import com.intellij.openapi.roots.OrderRootType;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.encoding.EncodingManager;
-import com.intellij.util.Alarm;
 import com.intellij.util.PathUtil;
 import org.jetbrains.plugins.clojure.config.ClojureConfigUtil;
 import org.jetbrains.plugins.clojure.utils.ClojureUtils;
@@ -61,6 +60,7 @@ public class ClojureReplProcessHandler extends ProcessHandler {
 
   private static final Logger LOG = Logger.getInstance(ClojureReplProcessHandler.class.getName());
   private static ExecutorService ourThreadExecutorsService = null;
+  private static final long READ_TERMINATION_TIMEOUT = 1000;
 
   private final Process myProcess;
   private final ProcessWaitFor myWaitFor;
@@ -224,12 +224,8 @@ public class ClojureReplProcessHandler extends ProcessHandler {
               try {
                 exitCode = myWaitFor.waitFor();
 
-                // tell threads that no more attempts to read process' output should be made
-                stderrThread.setProcessTerminated(true);
-                stdoutThread.setProcessTerminated(true);
-
-                stdErrReadingFuture.get();
-                stdOutReadingFuture.get();
+                waitForReading(stdErrReadingFuture, myProcess.getErrorStream());
+                waitForReading(stdOutReadingFuture, myProcess.getInputStream());
               }
               catch (InterruptedException e) {
                 // Do nothing
@@ -253,6 +249,25 @@ public class ClojureReplProcessHandler extends ProcessHandler {
     super.startNotify();
   }
 
+  /**
+   * Reading normally stops at the end of the stream once the process has exited. If a child of the process
+   * still holds the pipe open, the stream is closed to unblock the reader.
+   */
+  private static void waitForReading(Future<?> readingFuture, InputStream stream)
+      throws InterruptedException, ExecutionException {
+    try {
+      readingFuture.get(READ_TERMINATION_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+    catch (TimeoutException e) {
+      try {
+        stream.close();
+      }
+      catch (IOException ignore) {
+      }
+      readingFuture.get();
+    }
+  }
+
   protected void onOSProcessTerminated(final int exitCode) {
     notifyProcessTerminated(exitCode);
   }
@@ -308,101 +323,65 @@ public class ClojureReplProcessHandler extends ProcessHandler {
     return EncodingManager.getInstance().getDefaultCharset();
   }
 
-  private static abstract class ReadProcessThread implements Runnable {
-    private static final int NOTIFY_TEXT_DELAY = 300;
+  /**
+   * Pumps process output to {@link #textAvailable(String)}. Reads block on the stream and take whatever is
+   * available in one call. Pending text is delivered before any read which may block, i.e. as soon as the stream
+   * has nothing more to offer, or when {@link #MAX_CHUNK_SIZE} characters or {@link #NOTIFY_TEXT_DELAY} ms
+   * of continuous output have piled up.
+   */
+  static abstract class ReadProcessThread implements Runnable {
+    static final int NOTIFY_TEXT_DELAY = 300;
+    static final int MAX_CHUNK_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
 
     private final Reader myReader;
-
-    private final StringBuffer myBuffer = new StringBuffer();
-    private final Alarm myAlarm;
+    private final char[] myReadBuffer = new char[READ_BUFFER_SIZE];
+    private final StringBuilder myBuffer = new StringBuilder();
+    private long myFirstPendingTime;
 
     private boolean myIsClosed = false;
-    private boolean myIsProcessTerminated = false;
 
     public ReadProcessThread(final Reader reader) {
       myReader = reader;
-      myAlarm = new Alarm(Alarm.ThreadToUse.SHARED_THREAD);
-    }
-
-    public synchronized boolean isProcessTerminated() {
-      return myIsProcessTerminated;
-    }
-
-    public synchronized void setProcessTerminated(boolean isProcessTerminated) {
-      myIsProcessTerminated = isProcessTerminated;
     }
 
     public void run() {
-      Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
-      try {
-        myAlarm.addRequest(new Runnable() {
-          public void run() {
-            if (!isClosed()) {
-              myAlarm.addRequest(this, NOTIFY_TEXT_DELAY);
-              checkTextAvailable();
-            }
-          }
-        }, NOTIFY_TEXT_DELAY);
-
-        try {
-          while (!isClosed()) {
-            final int c = readNextByte();
-            if (c == -1) {
-              break;
-            }
-            synchronized (myBuffer) {
-              myBuffer.append((char) c);
-            }
-            if (c == '\n') { // not by '\r' because of possible '\n'
-              checkTextAvailable();
-            }
-          }
-        }
-        catch (Exception e) {
-          LOG.error(e);
-          e.printStackTrace();
-        }
-
-        close();
-      }
-      finally {
-        Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
-      }
-    }
-
-    private int readNextByte() {
       try {
-        while (!myReader.ready()) {
-          if (isProcessTerminated()) {
-            return -1;
+        while (!isClosed()) {
+          // pending text is never held over a read which may block
+          if (myBuffer.length() >= MAX_CHUNK_SIZE ||
+              System.currentTimeMillis() - myFirstPendingTime >= NOTIFY_TEXT_DELAY ||
+              !myReader.ready()) {
+            checkTextAvailable();
           }
-          try {
-            Thread.sleep(1L);
-          }
-          catch (InterruptedException ignore) {
+          final int n = myReader.read(myReadBuffer);
+          if (n == -1) break;
+          if (n == 0) continue;
+          if (myBuffer.length() == 0) {
+            myFirstPendingTime = System.currentTimeMillis();
           }
+          myBuffer.append(myReadBuffer, 0, n);
         }
-        return myReader.read();
       }
       catch (IOException e) {
-        return -1; // When process terminated Process.getInputStream()'s underlaying stream becomes closed on Linux.
+        // When process terminated Process.getInputStream()'s underlaying stream becomes closed on Linux.
       }
+      catch (Exception e) {
+        LOG.error(e);
+      }
+      close();
     }
 
     private void checkTextAvailable() {
-      synchronized (myBuffer) {
-        if (myBuffer.length() == 0) return;
-        // warning! Since myBuffer is reused, do not use myBuffer.toString() to fetch the string
-        // because the created string will get StringBuffer's internal char array as a buffer which is possibly too large.
-        final String s = myBuffer.substring(0, myBuffer.length());
-        myBuffer.setLength(0);
-        textAvailable(s);
-      }
+      if (myBuffer.length() == 0) return;
+      final String s = myBuffer.toString();
+      myBuffer.setLength(0);
+      textAvailable(s);
     }
 
     private void close() {
       synchronized (this) {
-        if (isClosed()) {
+        if (myIsClosed) {
           return;
         }
         myIsClosed = true;
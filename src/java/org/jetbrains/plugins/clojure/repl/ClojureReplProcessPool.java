@@ -0,0 +1,190 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import com.intellij.ProjectTopics;
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootAdapter;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.clojure.settings.ClojureProjectSettings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps one REPL process per module started in advance, so a console doesn't wait for the JVM and Clojure runtime
+ * to boot. The standby process is handed to the next console of the module started with the same command line,
+ * and another one is started in the background.
+ * <p/>
+ * Standby processes are destroyed when project roots change, since their classpath may be stale. A standby process
+ * has already loaded <code>user.clj</code> from the classpath, so it isn't used once such a file has been changed.
+ */
+public class ClojureReplProcessPool implements Disposable {
+  private static final Logger LOG = Logger.getInstance(ClojureReplProcessPool.class.getName());
+  private static final String USER_SCRIPT = "user.clj";
+
+  private final Project myProject;
+  private final Map<Module, Standby> myStandbys = new HashMap<Module, Standby>();
+
+  private static class Standby {
+    private final String myKey;
+    private final Future<Process> myProcess;
+
+    private Standby(String key, Future<Process> process) {
+      myKey = key;
+      myProcess = process;
+    }
+  }
+
+  public ClojureReplProcessPool(Project project) {
+    myProject = project;
+    Disposer.register(project, this);
+    project.getMessageBus().connect(this).subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        discardAll();
+      }
+    });
+  }
+
+  public static ClojureReplProcessPool getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, ClojureReplProcessPool.class);
+  }
+
+  private boolean isEnabled() {
+    return ClojureProjectSettings.getInstance(myProject).replStandby;
+  }
+
+  /**
+   * @return standby process of the module started with <code>commandLine</code>, or null if there is none.
+   *         A standby process started with another command line is destroyed.
+   */
+  @Nullable
+  public Process take(@NotNull Module module, @NotNull GeneralCommandLine commandLine) {
+    final Standby standby;
+    synchronized (myStandbys) {
+      standby = myStandbys.remove(module);
+    }
+    if (standby == null) return null;
+    final Process process = getProcess(standby);
+    if (process == null) return null;
+    if (!isEnabled() || !standby.myKey.equals(getKey(module, commandLine)) || !isAlive(process)) {
+      process.destroy();
+      return null;
+    }
+    return process;
+  }
+
+  /**
+   * Starts a standby process for the next console of the module, if it's enabled and not started yet
+   */
+  public void prepare(@NotNull Module module, @NotNull final GeneralCommandLine commandLine) {
+    if (!isEnabled()) return;
+    final String key = getKey(module, commandLine);
+    synchronized (myStandbys) {
+      final Standby existing = myStandbys.get(module);
+      if (existing != null && existing.myKey.equals(key)) return;
+      if (existing != null) {
+        destroy(existing);
+      }
+      myStandbys.put(module, new Standby(key, ApplicationManager.getApplication().executeOnPooledThread(new Callable<Process>() {
+        public Process call() throws ExecutionException {
+          return commandLine.createProcess();
+        }
+      })));
+    }
+  }
+
+  private void discardAll() {
+    final List<Standby> standbys;
+    synchronized (myStandbys) {
+      standbys = new ArrayList<Standby>(myStandbys.values());
+      myStandbys.clear();
+    }
+    for (Standby standby : standbys) {
+      destroy(standby);
+    }
+  }
+
+  public void dispose() {
+    discardAll();
+  }
+
+  /**
+   * Classpath, VM options and the rest of the command line, working directory, environment
+   * and <code>user.clj</code> files on the classpath
+   */
+  private static String getKey(Module module, GeneralCommandLine commandLine) {
+    final Map<String, String> env = commandLine.getEnvParams();
+    return Integer.toHexString((commandLine.getCommandLineString() + "\n" + commandLine.getWorkDirectory() + "\n" +
+        (env == null ? "" : new TreeMap<String, String>(env).toString()) + "\n" + getUserScriptStamps(module)).hashCode());
+  }
+
+  /**
+   * Paths and time stamps of <code>user.clj</code> files in roots of the module and its dependencies
+   */
+  private static String getUserScriptStamps(final Module module) {
+    return ApplicationManager.getApplication().runReadAction(new Computable<String>() {
+      public String compute() {
+        final StringBuilder stamps = new StringBuilder();
+        final OrderEnumerator enumerator = OrderEnumerator.orderEntries(module).withoutSdk().recursively();
+        appendUserScriptStamps(enumerator.getAllSourceRoots(), stamps);
+        appendUserScriptStamps(enumerator.getClassesRoots(), stamps);
+        return stamps.toString();
+      }
+    });
+  }
+
+  private static void appendUserScriptStamps(VirtualFile[] roots, StringBuilder stamps) {
+    for (VirtualFile root : roots) {
+      final VirtualFile script = root.findChild(USER_SCRIPT);
+      if (script != null) {
+        stamps.append(script.getPath()).append(':').append(script.getTimeStamp()).append('\n');
+      }
+    }
+  }
+
+  private static void destroy(Standby standby) {
+    final Process process = getProcess(standby);
+    if (process != null) {
+      process.destroy();
+    }
+  }
+
+  @Nullable
+  private static Process getProcess(Standby standby) {
+    try {
+      return standby.myProcess.get();
+    }
+    catch (Exception e) {
+      LOG.info(e);
+      return null;
+    }
+  }
+
+  private static boolean isAlive(Process process) {
+    try {
+      process.exitValue();
+      return false;
+    }
+    catch (IllegalThreadStateException e) {
+      return true;
+    }
+  }
+}
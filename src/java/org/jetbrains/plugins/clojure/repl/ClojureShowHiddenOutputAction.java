@@ -0,0 +1,29 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAwareAction;
+import org.jetbrains.plugins.clojure.ClojureBundle;
+
+/**
+ * Prints the next page of output which exceeded the console output limit
+ */
+public class ClojureShowHiddenOutputAction extends DumbAwareAction {
+  private final ClojureConsole myConsole;
+
+  public ClojureShowHiddenOutputAction(ClojureConsole console) {
+    super(ClojureBundle.message("repl.output.show.hidden"), ClojureBundle.message("repl.output.show.hidden.description"),
+        AllIcons.Actions.Expandall);
+    myConsole = console;
+  }
+
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setEnabled(myConsole.getOutputBuffer().hasHiddenOutput());
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    myConsole.getOutputBuffer().expand();
+  }
+}
@@ -1,34 +1,32 @@
 package org.jetbrains.plugins.clojure.repl.actions;
 
-import com.intellij.execution.ExecutionHelper;
+import com.intellij.execution.ExecutionManager;
 import com.intellij.execution.console.LanguageConsoleImpl;
 import com.intellij.execution.process.ProcessHandler;
 import com.intellij.execution.ui.RunContentDescriptor;
+import com.intellij.execution.ui.RunContentManager;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.DataKeys;
 import com.intellij.openapi.actionSystem.Presentation;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.CaretModel;
-import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiDocumentManager;
-import com.intellij.psi.PsiFile;
+import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.testFramework.LightVirtualFile;
-import com.intellij.util.NotNullFunction;
-import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.clojure.ClojureBundle;
-import org.jetbrains.plugins.clojure.psi.api.ClojureFile;
+import org.jetbrains.plugins.clojure.file.ClojureFileType;
 import org.jetbrains.plugins.clojure.repl.ClojureConsole;
 import org.jetbrains.plugins.clojure.repl.ClojureConsoleExecuteActionHandler;
 import org.jetbrains.plugins.clojure.repl.ClojureConsoleProcessHandler;
+import org.jetbrains.plugins.clojure.repl.ClojureConsoleRegistry;
 import org.jetbrains.plugins.clojure.repl.ClojureConsoleView;
 
-import java.util.Collection;
-
 /**
  * @author ilyas
  */
@@ -36,15 +34,23 @@ public abstract class ClojureConsoleActionBase extends AnAction {
 
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.plugins.clojure.repl.actions.LoadClojureFileInConsoleAction");
 
+  /**
+   * @return console selected in the visible Run tool window if it's a running Clojure console,
+   *         otherwise the active console of the registry
+   */
+  @Nullable
   protected static ClojureConsoleProcessHandler findRunningClojureConsole(Project project) {
-    final Collection<RunContentDescriptor> descriptors = ExecutionHelper.findRunningConsole(project, new ClojureConsoleMatcher());
-    for (RunContentDescriptor descriptor : descriptors) {
-      final ProcessHandler handler = descriptor.getProcessHandler();
-      if (handler instanceof ClojureConsoleProcessHandler) {
+    final RunContentManager contentManager = ExecutionManager.getInstance(project).getContentManager();
+    final RunContentDescriptor selected = contentManager.getSelectedContent();
+    if (selected != null && selected.getExecutionConsole() instanceof ClojureConsoleView) {
+      final ToolWindow toolWindow = contentManager.getToolWindowByDescriptor(selected);
+      final ProcessHandler handler = selected.getProcessHandler();
+      if (toolWindow != null && toolWindow.isVisible() &&
+          handler instanceof ClojureConsoleProcessHandler && !handler.isProcessTerminated()) {
         return (ClojureConsoleProcessHandler) handler;
       }
     }
-    return null;
+    return ClojureConsoleRegistry.getInstance(project).getActiveConsole();
   }
 
   protected static void executeCommand(final Project project, String command) {
@@ -69,13 +75,6 @@ public abstract class ClojureConsoleActionBase extends AnAction {
     handler.runExecuteAction(console, true);
   }
 
-  private static class ClojureConsoleMatcher implements NotNullFunction<RunContentDescriptor, Boolean> {
-    @NotNull
-    public Boolean fun(RunContentDescriptor descriptor) {
-      return descriptor != null && (descriptor.getExecutionConsole() instanceof ClojureConsoleView);
-    }
-  }
-
   @Override
   public void update(AnActionEvent e) {
     final Presentation presentation = e.getPresentation();
@@ -92,25 +91,16 @@ public abstract class ClojureConsoleActionBase extends AnAction {
       return;
     }
 
-    final Document document = editor.getDocument();
-    final PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(document);
-    if (psiFile == null || !(psiFile instanceof ClojureFile)) {
-      presentation.setEnabled(false);
-      return;
-    }
-
-    final VirtualFile virtualFile = psiFile.getVirtualFile();
-    if (virtualFile == null || virtualFile instanceof LightVirtualFile) {
-      presentation.setEnabled(false);
-      return;
-    }
-    final String filePath = virtualFile.getPath();
-    if (filePath == null) {
+    // only the document's file is checked here, the PSI isn't needed until the action is performed
+    final VirtualFile virtualFile = FileDocumentManager.getInstance().getFile(editor.getDocument());
+    if (virtualFile == null || virtualFile instanceof LightVirtualFile ||
+        virtualFile.getFileType() != ClojureFileType.CLOJURE_FILE_TYPE) {
       presentation.setEnabled(false);
       return;
     }
 
-    final ClojureConsoleProcessHandler handler = findRunningClojureConsole(project);
+    // updates happen often, so only the registry is consulted; the action may then pick the selected console
+    final ClojureConsoleProcessHandler handler = ClojureConsoleRegistry.getInstance(project).getActiveConsole();
     if (handler == null) {
       presentation.setEnabled(false);
       return;
@@ -0,0 +1,224 @@
+package org.jetbrains.plugins.clojure.repl.actions;
+
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DataKeys;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.clojure.ClojureBundle;
+import org.jetbrains.plugins.clojure.ClojureIcons;
+import org.jetbrains.plugins.clojure.psi.ClojurePsiElement;
+import org.jetbrains.plugins.clojure.psi.api.ClojureFile;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
+import org.jetbrains.plugins.clojure.repl.ClojureConsole;
+import org.jetbrains.plugins.clojure.repl.ClojureConsoleHighlightingUtil;
+import org.jetbrains.plugins.clojure.repl.ClojureConsoleProcessHandler;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Sends to the REPL only top-level forms of the file which were added or changed since the file was last loaded
+ * in the console. The forms are compiled together with the namespace form of the file, keeping their original
+ * lines, so stack traces and metadata still point to the file.
+ * <p/>
+ * Forms are identified by their text and position, so forms moved by lines inserted or deleted above them are sent
+ * again too. If the file wasn't loaded in the console yet, it is loaded as a whole.
+ */
+public class LoadChangedFormsInConsoleAction extends ClojureConsoleActionBase {
+
+  public LoadChangedFormsInConsoleAction() {
+    getTemplatePresentation().setIcon(ClojureIcons.REPL_LOAD);
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    final Editor editor = e.getData(DataKeys.EDITOR);
+
+    if (editor == null) return;
+    final Project project = editor.getProject();
+    if (project == null) return;
+
+    final Document document = editor.getDocument();
+    PsiDocumentManager.getInstance(project).commitDocument(document);
+    final PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(document);
+    if (psiFile == null || !(psiFile instanceof ClojureFile)) return;
+
+    final VirtualFile virtualFile = psiFile.getVirtualFile();
+    if (virtualFile == null) return;
+    final String filePath = virtualFile.getPath();
+
+    final ClojureConsoleProcessHandler handler = findRunningClojureConsole(project);
+    if (handler == null || !(handler.getLanguageConsole() instanceof ClojureConsole)) return;
+    final ClojureConsole console = (ClojureConsole) handler.getLanguageConsole();
+
+    final List<PsiElement> forms = getTopLevelForms((ClojureFile) psiFile);
+    final Set<String> loaded = console.getLoadedForms(filePath);
+    final String failure = getFailureMessage(virtualFile);
+    if (loaded == null) {
+      FileDocumentManager.getInstance().saveDocument(document);
+      executeCommand(project, reportFailure("(load-file \"" + escape(filePath) + "\")", failure));
+      rememberLoadedForms(console, (ClojureFile) psiFile, document, failure);
+      return;
+    }
+
+    final ClNs ns = ((ClojureFile) psiFile).getNamespaceElement();
+    final List<PsiElement> toSend = new ArrayList<PsiElement>();
+    final Set<String> hashes = new HashSet<String>();
+    final Set<String> sent = new HashSet<String>();
+    for (PsiElement form : forms) {
+      final String hash = getKey(document, form);
+      hashes.add(hash);
+      final boolean isNew = !loaded.contains(hash);
+      if (isNew) {
+        sent.add(hash);
+      }
+      // the namespace form is always sent, so the forms are compiled in the namespace of the file
+      if (isNew || form == ns) {
+        toSend.add(form);
+      }
+    }
+
+    if (sent.isEmpty()) {
+      console.setLoadedForms(filePath, hashes, sent, failure);
+      ClojureConsoleHighlightingUtil.processOutput(console,
+          ClojureBundle.message("repl.load.changes.nothing", virtualFile.getName()) + "\n", ProcessOutputTypes.SYSTEM);
+      return;
+    }
+
+    final String source = buildSource(document, toSend);
+    executeCommand(project, reportFailure("(clojure.lang.Compiler/load (java.io.StringReader. \"" + escape(source) + "\") \"" +
+        escape(filePath) + "\" \"" + escape(virtualFile.getName()) + "\")", failure));
+    // hashes of the sent forms are dropped again if the evaluation fails
+    console.setLoadedForms(filePath, hashes, sent, failure);
+  }
+
+  /**
+   * Remembers forms of the file as loaded in the console after the whole file was sent to it
+   *
+   * @param failure line the load command prints to the error stream if it fails, see {@link #reportFailure}
+   */
+  public static void rememberLoadedForms(ClojureConsole console, ClojureFile file, Document document, String failure) {
+    final VirtualFile virtualFile = file.getVirtualFile();
+    if (virtualFile == null) return;
+    final Set<String> hashes = new HashSet<String>();
+    for (PsiElement form : getTopLevelForms(file)) {
+      hashes.add(getKey(document, form));
+    }
+    console.setLoadedForms(virtualFile.getPath(), hashes, new HashSet<String>(hashes), failure);
+  }
+
+  public static String getFailureMessage(VirtualFile file) {
+    return ClojureBundle.message("repl.load.failed", file.getName());
+  }
+
+  /**
+   * Wraps a load command, so it prints the failure message to the error stream before the REPL reports
+   * the exception. Warnings and other error output don't make a load fail.
+   */
+  public static String reportFailure(String command, String failure) {
+    return "(try " + command + " (catch Throwable e (binding [*out* *err*] (println \"" + escape(failure) + "\")) " +
+        "(throw e)))";
+  }
+
+  /**
+   * Text of a form together with its position, so a form which moved is sent again and gets its new line
+   */
+  private static String getKey(Document document, PsiElement form) {
+    final int offset = form.getTextRange().getStartOffset();
+    final int line = document.getLineNumber(offset);
+    return hash(form.getText()) + "@" + line + ":" + (offset - document.getLineStartOffset(line));
+  }
+
+  private static List<PsiElement> getTopLevelForms(ClojureFile file) {
+    final List<PsiElement> forms = new ArrayList<PsiElement>();
+    for (PsiElement child = file.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child instanceof ClojurePsiElement) {
+        forms.add(child);
+      }
+    }
+    return forms;
+  }
+
+  /**
+   * Places forms at their lines and columns, so the reader assigns them the same positions they have in the file
+   */
+  private static String buildSource(Document document, List<PsiElement> forms) {
+    final StringBuilder source = new StringBuilder();
+    int line = 0;
+    int column = 0;
+    for (PsiElement form : forms) {
+      final int offset = form.getTextRange().getStartOffset();
+      final int formLine = document.getLineNumber(offset);
+      final int formColumn = offset - document.getLineStartOffset(formLine);
+      if (line < formLine) {
+        column = 0;
+      }
+      for (; line < formLine; line++) {
+        source.append('\n');
+      }
+      for (; column < formColumn; column++) {
+        source.append(' ');
+      }
+      final String text = form.getText();
+      source.append(text);
+      final int lastBreak = text.lastIndexOf('\n');
+      for (int i = 0; i < text.length(); i++) {
+        if (text.charAt(i) == '\n') line++;
+      }
+      column = lastBreak < 0 ? column + text.length() : text.length() - lastBreak - 1;
+    }
+    return source.toString();
+  }
+
+  /**
+   * @return text as the contents of a Clojure string literal
+   */
+  private static String escape(String text) {
+    final StringBuilder result = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      switch (c) {
+        case '\\':
+          result.append("\\\\");
+          break;
+        case '"':
+          result.append("\\\"");
+          break;
+        case '\n':
+          result.append("\\n");
+          break;
+        case '\r':
+          result.append("\\r");
+          break;
+        default:
+          result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  @NotNull
+  private static String hash(String text) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("MD5");
+      return new BigInteger(1, digest.digest(text.getBytes("UTF-8"))).toString(16);
+    }
+    catch (NoSuchAlgorithmException e) {
+      return text;
+    }
+    catch (UnsupportedEncodingException e) {
+      return text;
+    }
+  }
+}
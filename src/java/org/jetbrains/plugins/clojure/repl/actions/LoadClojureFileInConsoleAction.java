@@ -11,6 +11,8 @@ import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.plugins.clojure.ClojureIcons;
 import org.jetbrains.plugins.clojure.psi.api.ClojureFile;
+import org.jetbrains.plugins.clojure.repl.ClojureConsole;
+import org.jetbrains.plugins.clojure.repl.ClojureConsoleProcessHandler;
 
 /**
  * @author ilyas
@@ -43,12 +45,19 @@ public class LoadClojureFileInConsoleAction extends ClojureConsoleActionBase {
     final String filePath = virtualFile.getPath();
     if (filePath == null) return;
 
-    final String command = "(load-file \"" + filePath + "\")";
+    final String failure = LoadChangedFormsInConsoleAction.getFailureMessage(virtualFile);
+    final String command = LoadChangedFormsInConsoleAction.reportFailure("(load-file \"" + filePath + "\")", failure);
 
     PsiDocumentManager.getInstance(project).commitAllDocuments();
     FileDocumentManager.getInstance().saveAllDocuments();
 
     executeCommand(project, command);
+
+    final ClojureConsoleProcessHandler handler = findRunningClojureConsole(project);
+    if (handler != null && handler.getLanguageConsole() instanceof ClojureConsole) {
+      LoadChangedFormsInConsoleAction.rememberLoadedForms((ClojureConsole) handler.getLanguageConsole(), (ClojureFile) psiFile,
+          document, failure);
+    }
   }
 
 }
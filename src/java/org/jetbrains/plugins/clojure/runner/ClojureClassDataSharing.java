@@ -0,0 +1,211 @@
+package org.jetbrains.plugins.clojure.runner;
+
+import com.intellij.execution.configurations.JavaParameters;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.clojure.ClojureBundle;
+
+import java.io.*;
+import java.util.Properties;
+
+/**
+ * Application class data sharing archives for Clojure scripts. Most of a short script's run is spent loading
+ * <code>clojure.core</code>, and a JVM started with an archive of classes loaded by an earlier run maps them
+ * instead.
+ * <p/>
+ * Archives are kept in the system directory, one per JDK and classpath, and are replaced when the classpath jars
+ * change. The first run of a classpath is a plain one, measured as a reference, the second one writes the archive
+ * at exit and later runs use it. Measurements are wall times of whole runs, the last run with the archive is compared
+ * to the single run without it. Archives are written with <code>-XX:ArchiveClassesAtExit</code>, so JDK 13 or newer
+ * is required.
+ */
+public class ClojureClassDataSharing {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.plugins.clojure.runner.ClojureClassDataSharing");
+
+  private static final int MIN_JDK_VERSION = 13;
+  private static final String WITHOUT_ARCHIVE = "without.archive";
+  private static final String WITH_ARCHIVE = "with.archive";
+  private static final char ARCHIVE_SEPARATOR = '-';
+
+  private final File myArchive;
+  private final File myStatistics;
+  private final String myMeasuredProperty;
+
+  private ClojureClassDataSharing(File archive, File statistics, String measuredProperty) {
+    myArchive = archive;
+    myStatistics = statistics;
+    myMeasuredProperty = measuredProperty;
+  }
+
+  /**
+   * Adds options using or writing the archive of the classpath to VM parameters
+   *
+   * @return the run configured, or null if the JDK can't write archives
+   */
+  @Nullable
+  public static ClojureClassDataSharing configure(@NotNull JavaParameters params) {
+    final File archive = getArchive(params);
+    if (archive == null) return null;
+    final File statistics = getStatistics(archive);
+    deleteSuperseded(archive);
+
+    if (archive.isFile()) {
+      params.getVMParametersList().add("-XX:SharedArchiveFile=" + archive.getPath());
+      return new ClojureClassDataSharing(archive, statistics, WITH_ARCHIVE);
+    }
+    if (loadStatistics(statistics).getProperty(WITHOUT_ARCHIVE) == null) {
+      return new ClojureClassDataSharing(archive, statistics, WITHOUT_ARCHIVE);
+    }
+    if (!FileUtil.createParentDirs(archive)) {
+      LOG.info("Cannot create directory for " + archive);
+      return null;
+    }
+    params.getVMParametersList().add("-XX:ArchiveClassesAtExit=" + archive.getPath());
+    return new ClojureClassDataSharing(archive, statistics, null);
+  }
+
+  /**
+   * Measures the wall time of the whole run, if it's a plain one or uses the archive
+   */
+  public void attach(@NotNull ProcessHandler handler) {
+    if (myMeasuredProperty == null) return;
+    final long start = System.currentTimeMillis();
+    handler.addProcessListener(new ProcessAdapter() {
+      @Override
+      public void processTerminated(ProcessEvent event) {
+        if (event.getExitCode() != 0) return;
+        final Properties statistics = loadStatistics(myStatistics);
+        statistics.setProperty(myMeasuredProperty, String.valueOf(System.currentTimeMillis() - start));
+        saveStatistics(myStatistics, statistics);
+      }
+    });
+  }
+
+  /**
+   * @return state of the archive of the classpath and the measured saving, for the run configuration editor
+   */
+  @NotNull
+  public static String getStatus(@NotNull JavaParameters params) {
+    final File archive = getArchive(params);
+    if (archive == null) return ClojureBundle.message("run.class.data.sharing.unsupported", MIN_JDK_VERSION);
+
+    final Properties statistics = loadStatistics(getStatistics(archive));
+    final String without = statistics.getProperty(WITHOUT_ARCHIVE);
+    final String with = statistics.getProperty(WITH_ARCHIVE);
+    if (!archive.isFile() || without == null || with == null) {
+      return ClojureBundle.message("run.class.data.sharing.not.measured");
+    }
+    try {
+      final long withoutTime = Long.parseLong(without);
+      final long withTime = Long.parseLong(with);
+      return ClojureBundle.message("run.class.data.sharing.saving", withoutTime - withTime, withTime, withoutTime);
+    }
+    catch (NumberFormatException e) {
+      return ClojureBundle.message("run.class.data.sharing.not.measured");
+    }
+  }
+
+  /**
+   * Archive is named after the JDK and the classpath, followed by modification times and sizes of the classpath jars.
+   * Only classes from jars are archived, so changes of directories don't invalidate it.
+   */
+  @Nullable
+  private static File getArchive(JavaParameters params) {
+    final Sdk jdk = params.getJdk();
+    if (jdk == null || getMajorVersion(jdk.getVersionString()) < MIN_JDK_VERSION) return null;
+    final String key = Integer.toHexString((jdk.getHomePath() + "\n" + params.getClassPath().getPathsString()).hashCode());
+    final StringBuilder stamps = new StringBuilder();
+    for (String path : params.getClassPath().getPathList()) {
+      final File entry = new File(path);
+      if (entry.isFile()) {
+        stamps.append(entry.lastModified()).append(':').append(entry.length()).append('\n');
+      }
+    }
+    return new File(getArchiveDirectory(), key + ARCHIVE_SEPARATOR + Integer.toHexString(stamps.toString().hashCode()) + ".jsa");
+  }
+
+  private static File getArchiveDirectory() {
+    return new File(PathManager.getSystemPath(), "clojure" + File.separator + "cds");
+  }
+
+  /**
+   * Deletes archives and statistics of the same JDK and classpath written before the jars changed
+   */
+  private static void deleteSuperseded(File archive) {
+    final String name = FileUtil.getNameWithoutExtension(archive);
+    final String prefix = name.substring(0, name.indexOf(ARCHIVE_SEPARATOR) + 1);
+    final File[] files = archive.getParentFile().listFiles();
+    if (files == null) return;
+    for (File file : files) {
+      if (file.getName().startsWith(prefix) && !FileUtil.getNameWithoutExtension(file).equals(name)) {
+        FileUtil.delete(file);
+      }
+    }
+  }
+
+  private static File getStatistics(File archive) {
+    return new File(archive.getParentFile(), FileUtil.getNameWithoutExtension(archive) + ".properties");
+  }
+
+  /**
+   * @return feature version of a JDK version string like <code>java version "1.8.0_20"</code> or <code>17.0.2</code>
+   */
+  static int getMajorVersion(@Nullable String versionString) {
+    if (versionString == null) return -1;
+    int start = 0;
+    while (start < versionString.length() && !Character.isDigit(versionString.charAt(start))) {
+      start++;
+    }
+    int end = start;
+    while (end < versionString.length() && Character.isDigit(versionString.charAt(end))) {
+      end++;
+    }
+    if (start == end) return -1;
+    final int major = Integer.parseInt(versionString.substring(start, end));
+    if (major == 1 && end < versionString.length() && versionString.charAt(end) == '.') {
+      return getMajorVersion(versionString.substring(end + 1));
+    }
+    return major;
+  }
+
+  private static Properties loadStatistics(File file) {
+    final Properties properties = new Properties();
+    if (!file.isFile()) return properties;
+    try {
+      final InputStream stream = new FileInputStream(file);
+      try {
+        properties.load(stream);
+      }
+      finally {
+        stream.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    return properties;
+  }
+
+  private static void saveStatistics(File file, Properties properties) {
+    try {
+      FileUtil.createParentDirs(file);
+      final OutputStream stream = new FileOutputStream(file);
+      try {
+        properties.store(stream, null);
+      }
+      finally {
+        stream.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+}
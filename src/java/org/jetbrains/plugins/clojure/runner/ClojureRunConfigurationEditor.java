@@ -47,6 +47,8 @@ public class ClojureRunConfigurationEditor extends SettingsEditor<ClojureScriptR
   private JCheckBox myReplCB;
   private JPanel myEnvPanel;
   private JCheckBox runMainFunction;
+  private JCheckBox myClassDataSharingCB;
+  private JLabel myClassDataSharingStatus;
   private JTextField scriptPathField;
   private JTextField workDirField;
 
@@ -104,6 +106,10 @@ public class ClojureRunConfigurationEditor extends SettingsEditor<ClojureScriptR
 
     runMainFunction.setSelected(configuration.getRunMainFunction());
 
+    myClassDataSharingCB.setSelected(configuration.getUseClassDataSharing());
+    final String status = configuration.getClassDataSharingStatus();
+    myClassDataSharingStatus.setText(status == null ? "" : status);
+
     myModulesModel.removeAllElements();
     for (Module module : configuration.getValidModules()) {
       myModulesModel.addElement(module);
@@ -118,6 +124,7 @@ public class ClojureRunConfigurationEditor extends SettingsEditor<ClojureScriptR
     configuration.setVmParams(myVMParameters.getText());
     configuration.setRunInREPL(myReplCB.isSelected());
     configuration.setRunMainFunction(runMainFunction.isSelected());
+    configuration.setUseClassDataSharing(myClassDataSharingCB.isSelected());
     configuration.setScriptParams(myParameters.getText());
     configuration.setScriptPath(scriptPathField.getText());
     configuration.setWorkDir(workDirField.getText());
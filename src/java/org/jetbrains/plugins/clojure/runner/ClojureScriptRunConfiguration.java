@@ -7,6 +7,7 @@ import com.intellij.execution.Executor;
 import com.intellij.execution.configurations.*;
 import com.intellij.execution.filters.Filter;
 import com.intellij.execution.filters.TextConsoleBuilderImpl;
+import com.intellij.execution.process.OSProcessHandler;
 import com.intellij.execution.impl.ConsoleViewImpl;
 import com.intellij.execution.runners.ExecutionEnvironment;
 import com.intellij.execution.ui.ConsoleView;
@@ -67,6 +68,7 @@ public class ClojureScriptRunConfiguration extends ModuleBasedConfiguration impl
   private String scriptParams;
   private boolean runInREPL;
   private boolean runMainFunction;
+  private boolean useClassDataSharing;
   private final Map<String, String> envs = new com.intellij.util.containers.hash.LinkedHashMap<String, String>();
   public boolean passParentEnv = true;
 
@@ -111,6 +113,7 @@ public class ClojureScriptRunConfiguration extends ModuleBasedConfiguration impl
     workDir = JDOMExternalizer.readString(element, "workDir");
     runInREPL = Boolean.parseBoolean(JDOMExternalizer.readString(element, "repl"));
     runMainFunction = Boolean.parseBoolean(JDOMExternalizer.readString(element, "main"));
+    useClassDataSharing = Boolean.parseBoolean(JDOMExternalizer.readString(element, "cds"));
     workDir = getWorkDir();
 
     envs.clear();
@@ -126,6 +129,7 @@ public class ClojureScriptRunConfiguration extends ModuleBasedConfiguration impl
     JDOMExternalizer.write(element, "workDir", workDir);
     JDOMExternalizer.write(element, "repl", runInREPL);
     JDOMExternalizer.write(element, "main", runMainFunction);
+    JDOMExternalizer.write(element, "cds", useClassDataSharing);
     JDOMExternalizer.writeMap(element, envs, null, "env");
     PathMacroManager.getInstance(getProject()).collapsePathsRecursively(element);
   }
@@ -185,6 +189,24 @@ public class ClojureScriptRunConfiguration extends ModuleBasedConfiguration impl
     params.setMainClass(ClojureUtils.CLOJURE_MAIN);
   }
 
+  /**
+   * @return state of the class data sharing archive for the classpath of the configuration, or null if the classpath
+   *         can't be determined
+   */
+  @Nullable
+  public String getClassDataSharingStatus() {
+    final Module module = getModule();
+    if (module == null) return null;
+    final ClojureConfigUtil.RunConfigurationParameters params = new ClojureConfigUtil.RunConfigurationParameters();
+    try {
+      configureScriptSystemClassPath(params, module);
+    }
+    catch (CantRunException e) {
+      return null;
+    }
+    return ClojureClassDataSharing.getStatus(params);
+  }
+
   private boolean isJarFromJRE(String path, Module module) {
     if (path == null) return false;
     OrderEntry[] entries = ModuleRootManager.getInstance(module).getOrderEntries();
@@ -284,11 +306,17 @@ public class ClojureScriptRunConfiguration extends ModuleBasedConfiguration impl
     }
 
     final JavaCommandLineState state = new JavaCommandLineState(environment) {
+      private ClojureClassDataSharing myClassDataSharing;
+
       protected JavaParameters createJavaParameters() throws ExecutionException {
         ProgramParametersUtil.configureConfiguration(params, ClojureScriptRunConfiguration.this);
 
         configureJavaParams(params, module);
 
+        if (useClassDataSharing) {
+          myClassDataSharing = ClojureClassDataSharing.configure(params);
+        }
+
         final ParametersList list = params.getProgramParametersList();
 
         if (runMainFunction) {
@@ -299,6 +327,16 @@ public class ClojureScriptRunConfiguration extends ModuleBasedConfiguration impl
 
         return params;
       }
+
+      @NotNull
+      @Override
+      protected OSProcessHandler startProcess() throws ExecutionException {
+        final OSProcessHandler handler = super.startProcess();
+        if (myClassDataSharing != null) {
+          myClassDataSharing.attach(handler);
+        }
+        return handler;
+      }
     };
 
     final TextConsoleBuilderImpl builder = new TextConsoleBuilderImpl(project) {
@@ -376,6 +414,14 @@ public class ClojureScriptRunConfiguration extends ModuleBasedConfiguration impl
     runMainFunction = b;
   }
 
+  public boolean getUseClassDataSharing() {
+    return useClassDataSharing;
+  }
+
+  public void setUseClassDataSharing(boolean b) {
+    useClassDataSharing = b;
+  }
+
   public void setPassParentEnvs(boolean passParentEnvs) {
     this.passParentEnv = passParentEnvs;
   }
@@ -0,0 +1,130 @@
+package org.jetbrains.plugins.clojure.runner.console;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootAdapter;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Files of the project by their short names, as console filters see them in stack traces. A long stack trace
+ * mentions a few files many times, so the most recently used names are kept with their files.
+ * <p/>
+ * A name is forgotten when a file with this name is created, deleted, moved or renamed, and all names are forgotten
+ * when such a change happens to a directory or project roots change.
+ */
+public class ClojureFileNameCache {
+  private static final int MAX_SIZE = 1000;
+
+  private final Project myProject;
+  private final Map<String, VirtualFile[]> myFiles = new LinkedHashMap<String, VirtualFile[]>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, VirtualFile[]> eldest) {
+      return size() > MAX_SIZE;
+    }
+  };
+
+  public ClojureFileNameCache(Project project) {
+    myProject = project;
+    final MessageBusConnection connection = project.getMessageBus().connect(project);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          invalidate(event);
+        }
+      }
+    });
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        clear();
+      }
+    });
+  }
+
+  public static ClojureFileNameCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, ClojureFileNameCache.class);
+  }
+
+  /**
+   * @return valid files of the project named <code>name</code>
+   */
+  @NotNull
+  public VirtualFile[] getFilesByName(@NotNull String name) {
+    VirtualFile[] files;
+    synchronized (myFiles) {
+      files = myFiles.get(name);
+    }
+    if (files != null && allValid(files)) return files;
+
+    final PsiFile[] psiFiles = PsiShortNamesCache.getInstance(myProject).getFilesByName(name);
+    final List<VirtualFile> result = new ArrayList<VirtualFile>(psiFiles.length);
+    for (PsiFile psiFile : psiFiles) {
+      final VirtualFile file = psiFile.getVirtualFile();
+      if (file != null) {
+        result.add(file);
+      }
+    }
+    files = result.toArray(new VirtualFile[result.size()]);
+    synchronized (myFiles) {
+      myFiles.put(name, files);
+    }
+    return files;
+  }
+
+  private void invalidate(VFileEvent event) {
+    if (event instanceof VFileContentChangeEvent) return;
+    final VirtualFile file = event.getFile();
+    if (file != null && file.isDirectory() || event instanceof VFileCreateEvent && ((VFileCreateEvent) event).isDirectory()) {
+      clear();
+      return;
+    }
+
+    final List<String> names = new ArrayList<String>(2);
+    if (event instanceof VFileCreateEvent) {
+      names.add(((VFileCreateEvent) event).getChildName());
+    } else if (event instanceof VFileCopyEvent) {
+      names.add(((VFileCopyEvent) event).getNewChildName());
+    } else if (event instanceof VFilePropertyChangeEvent) {
+      final VFilePropertyChangeEvent propertyChange = (VFilePropertyChangeEvent) event;
+      if (!VirtualFile.PROP_NAME.equals(propertyChange.getPropertyName())) return;
+      names.add(String.valueOf(propertyChange.getOldValue()));
+      names.add(String.valueOf(propertyChange.getNewValue()));
+    } else if (file != null) {
+      names.add(file.getName());
+    }
+
+    synchronized (myFiles) {
+      for (String name : names) {
+        myFiles.remove(name);
+      }
+    }
+  }
+
+  private void clear() {
+    synchronized (myFiles) {
+      myFiles.clear();
+    }
+  }
+
+  private static boolean allValid(VirtualFile[] files) {
+    for (VirtualFile file : files) {
+      if (!file.isValid()) return false;
+    }
+    return true;
+  }
+}
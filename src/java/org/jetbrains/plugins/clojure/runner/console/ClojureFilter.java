@@ -8,7 +8,8 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
 import com.intellij.openapi.ui.popup.PopupChooserBuilder;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.pom.Navigatable;
 import com.intellij.ide.util.EditSourceUtil;
@@ -16,8 +17,8 @@ import com.intellij.ide.util.PsiElementListCellRenderer;
 import com.intellij.ide.DataManager;
 
 import javax.swing.*;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -29,53 +30,93 @@ public class ClojureFilter implements Filter {
 
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.plugins.clojure.runner.console.ClojureFilter");
 
-  private static final Pattern PATTERN = Pattern.compile(".*\\((\\w*\\.clj):(\\d*)\\)(\\s|.)*");
+  private static final String EXTENSION = ".clj:";
 
   public ClojureFilter(Project project) {
     myProject = project;
   }
 
   public Result applyFilter(String line, int entireLength) {
-    try {
-      final Matcher matcher = PATTERN.matcher(line);
-      if (matcher.matches()) {
-        final String fileName = matcher.group(1);
-        final int lineNumber = Integer.parseInt(matcher.group(2));
-
-        final int textStartOffset = entireLength - line.length();
+    final TextRange range = findFileReference(line);
+    if (range == null) return null;
 
-        final PsiShortNamesCache cache = PsiShortNamesCache.getInstance(myProject);
-        final PsiFile[] psiFiles = cache.getFilesByName(fileName);
+    final int colon = line.lastIndexOf(':', range.getEndOffset());
+    final String fileName = line.substring(range.getStartOffset(), colon);
+    final int lineNumber;
+    try {
+      lineNumber = Integer.parseInt(line.substring(colon + 1, range.getEndOffset()));
+    }
+    catch (NumberFormatException e) {
+      LOG.debug(e);
+      return null;
+    }
 
-        if (psiFiles.length == 0) return null;
+    final VirtualFile[] files = ClojureFileNameCache.getInstance(myProject).getFilesByName(fileName);
+    if (files.length == 0) return null;
 
+    final HyperlinkInfo info = files.length == 1 ?
+        new OpenFileHyperlinkInfo(myProject, files[0], lineNumber - 1) :
+        new MyHyperlinkInfo(files);
 
-        final HyperlinkInfo info = psiFiles.length == 1 ?
-            new OpenFileHyperlinkInfo(myProject, psiFiles[0].getVirtualFile(), lineNumber - 1) :
-            new MyHyperlinkInfo(psiFiles);
+    final int textStartOffset = entireLength - line.length();
+    return new Result(textStartOffset + range.getStartOffset(), textStartOffset + range.getEndOffset(), info);
+  }
 
-        return new Result(textStartOffset + matcher.start(1), textStartOffset + matcher.end(2), info);
+  /**
+   * Finds the last reference like <code>(core.clj:42)</code> in the line in linear time, as long stack trace
+   * lines would make a backtracking regular expression crawl.
+   *
+   * @return range of the file name and the line number, without parentheses
+   */
+  @Nullable
+  static TextRange findFileReference(String line) {
+    int extension = line.lastIndexOf(EXTENSION);
+    while (extension >= 0) {
+      int end = extension + EXTENSION.length();
+      while (end < line.length() && isDigit(line.charAt(end))) {
+        end++;
       }
+      int start = extension;
+      while (start > 0 && isWordCharacter(line.charAt(start - 1))) {
+        start--;
+      }
+      if (start > 0 && start < extension && line.charAt(start - 1) == '(' &&
+          end > extension + EXTENSION.length() && end < line.length() && line.charAt(end) == ')') {
+        return new TextRange(start, end);
+      }
+      extension = extension > 0 ? line.lastIndexOf(EXTENSION, extension - 1) : -1;
     }
-    catch (NumberFormatException e) {
-      LOG.debug(e);
-    }
-
     return null;
+  }
 
+  private static boolean isWordCharacter(char c) {
+    return c == '_' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isDigit(c);
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
   }
 
   private static class MyHyperlinkInfo implements HyperlinkInfo {
-    private final PsiFile[] myPsiFiles;
+    private final VirtualFile[] myFiles;
 
-    public MyHyperlinkInfo(final PsiFile[] psiFiles) {
-      myPsiFiles = psiFiles;
+    public MyHyperlinkInfo(final VirtualFile[] files) {
+      myFiles = files;
     }
 
     public void navigate(final Project project) {
       DefaultPsiElementListCellRenderer renderer = new DefaultPsiElementListCellRenderer();
 
-      final JList list = new JList(myPsiFiles);
+      final List<PsiFile> psiFiles = new ArrayList<PsiFile>(myFiles.length);
+      final PsiManager manager = PsiManager.getInstance(project);
+      for (VirtualFile file : myFiles) {
+        final PsiFile psiFile = file.isValid() ? manager.findFile(file) : null;
+        if (psiFile != null) {
+          psiFiles.add(psiFile);
+        }
+      }
+
+      final JList list = new JList(psiFiles.toArray());
       list.setCellRenderer(renderer);
 
       renderer.installSpeedSearch(list);
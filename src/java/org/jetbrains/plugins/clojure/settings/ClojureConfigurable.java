@@ -71,6 +71,10 @@ public final class ClojureConfigurable extends AbstractProjectComponent implemen
   public void apply() throws ConfigurationException {
     ClojureProjectSettings settings = ClojureProjectSettings.getInstance(myProject);
     settings.coloredParentheses = mySettingsForm.isColoredParentheses();
+    // limits are applied to consoles started afterwards
+    settings.replStandby = mySettingsForm.isReplStandby();
+    settings.replOutputLimit = mySettingsForm.getReplOutputLimit();
+    settings.replHistoryLimit = mySettingsForm.getReplHistoryLimit();
   }
 
   public void reset() {
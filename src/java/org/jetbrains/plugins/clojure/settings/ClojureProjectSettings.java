@@ -46,6 +46,18 @@ public final class ClojureProjectSettings implements PersistentStateComponent<Cl
 
   public boolean autoStartRepl;
   public boolean coloredParentheses;
+  /**
+   * Maximum number of characters of one evaluation's output shown in the REPL console
+   */
+  public int replOutputLimit = 100000;
+  /**
+   * Maximum number of characters kept in the REPL console history
+   */
+  public int replHistoryLimit = 1000000;
+  /**
+   * Keep a REPL process started in advance for the next console of a module
+   */
+  public boolean replStandby;
 
 
   public ClojureProjectSettings() {
@@ -24,14 +24,22 @@ import javax.swing.*;
  */
 public final class ClojureProjectSettingsForm {
 
+  private static final int MIN_LIMIT = 1000;
+
   private final ClojureProjectSettings mySettings;
 
   private JPanel myPanel;
   private JCheckBox rainbowParenthesesCheckBox;
   private JPanel myAppearancePanel;
+  private JPanel myReplPanel;
+  private JCheckBox replStandbyCheckBox;
+  private JSpinner replOutputLimitSpinner;
+  private JSpinner replHistoryLimitSpinner;
 
   public ClojureProjectSettingsForm(Project project) {
     mySettings = ClojureProjectSettings.getInstance(project);
+    replOutputLimitSpinner.setModel(new SpinnerNumberModel(MIN_LIMIT, MIN_LIMIT, Integer.MAX_VALUE, MIN_LIMIT));
+    replHistoryLimitSpinner.setModel(new SpinnerNumberModel(MIN_LIMIT, MIN_LIMIT, Integer.MAX_VALUE, MIN_LIMIT));
   }
 
   JComponent getComponent() {
@@ -42,13 +50,31 @@ public final class ClojureProjectSettingsForm {
     return rainbowParenthesesCheckBox.isSelected();
   }
 
+  boolean isReplStandby() {
+    return replStandbyCheckBox.isSelected();
+  }
+
+  int getReplOutputLimit() {
+    return (Integer) replOutputLimitSpinner.getValue();
+  }
+
+  int getReplHistoryLimit() {
+    return (Integer) replHistoryLimitSpinner.getValue();
+  }
+
   boolean isModified() {
     final boolean coloredParentheses = mySettings.coloredParentheses;
-    return (rainbowParenthesesCheckBox.isSelected() != coloredParentheses);
+    return (rainbowParenthesesCheckBox.isSelected() != coloredParentheses) ||
+        isReplStandby() != mySettings.replStandby ||
+        getReplOutputLimit() != mySettings.replOutputLimit ||
+        getReplHistoryLimit() != mySettings.replHistoryLimit;
   }
 
   void reset() {
     rainbowParenthesesCheckBox.setSelected(mySettings.coloredParentheses);
+    replStandbyCheckBox.setSelected(mySettings.replStandby);
+    replOutputLimitSpinner.setValue(Math.max(mySettings.replOutputLimit, MIN_LIMIT));
+    replHistoryLimitSpinner.setValue(Math.max(mySettings.replHistoryLimit, MIN_LIMIT));
   }
 
 }
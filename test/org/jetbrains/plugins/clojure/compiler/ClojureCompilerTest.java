@@ -1,12 +1,20 @@
 package org.jetbrains.plugins.clojure.compiler;
 
+import com.intellij.compiler.server.BuildManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiFile;
 import com.intellij.testFramework.CompilerTester;
 import com.intellij.testFramework.PsiTestUtil;
 import com.intellij.testFramework.builders.JavaModuleFixtureBuilder;
 import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.util.Processor;
+import org.jetbrains.jps.clojure.build.ClojureCompileServer;
 import org.jetbrains.plugins.clojure.util.TestUtils;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author peter
@@ -46,8 +54,112 @@ public class ClojureCompilerTest extends JavaCodeInsightFixtureTestCase {
     assertNull(myTester.findClassFile("hello__init", myModule));
   }
 
+  public void testChangedDependencyRecompilesDependent() throws Exception {
+    myFixture.addClass("class Foo {}");
+    final PsiFile dependency = myFixture.addFileToProject("b.clj", "(ns b)\n" +
+        "(defn f [] 1)");
+    myFixture.addFileToProject("a.clj", "(ns a (:require b) (:gen-class))\n" +
+        "(defn -main [] (println (b/f)))");
+    assertEmpty(myTester.make());
+    assertNull(myTester.findClassFile("b$g", myModule));
+
+    //b isn't compiled itself, its new function appears only as a part of compiling a
+    myTester.setFileText(dependency, "(ns b)\n" +
+        "(defn g [] 2)\n" +
+        "(def f g)");
+    assertEmpty(myTester.make());
+    assertNotNull(myTester.findClassFile("b$g", myModule));
+  }
+
+  public void testChangedDependencyRecompilesDependentWithoutStoredGraph() throws Exception {
+    myFixture.addClass("class Foo {}");
+    final PsiFile dependency = myFixture.addFileToProject("b.clj", "(ns b)\n" +
+        "(defn f [] 1)");
+    myFixture.addFileToProject("a.clj", "(ns a (:require b) (:gen-class))\n" +
+        "(defn -main [] (println (b/f)))");
+    assertEmpty(myTester.make());
+
+    //as after an update of the plugin, the graph is unknown and only b is dirty
+    final File systemDirectory = BuildManager.getInstance().getProjectSystemDirectory(getProject());
+    assertNotNull(systemDirectory);
+    final List<File> storages = new ArrayList<File>();
+    FileUtil.processFilesRecursively(systemDirectory, new Processor<File>() {
+      public boolean process(File file) {
+        if (file.getName().equals("clojure-namespaces.dat")) storages.add(file);
+        return true;
+      }
+    });
+    assertFalse(storages.isEmpty());
+    for (File storage : storages) {
+      assertTrue(FileUtil.delete(storage));
+    }
+
+    myTester.setFileText(dependency, "(ns b)\n" +
+        "(defn g [] 2)\n" +
+        "(def f g)");
+    assertEmpty(myTester.make());
+    assertNotNull(myTester.findClassFile("b$g", myModule));
+  }
+
+  public void testCompileInSeveralWorkers() throws Exception {
+    ClojureCompilerSettings.getInstance(getProject()).getState().COMPILER_WORKERS = 3;
+    myFixture.addClass("class Foo {}");
+    final PsiFile dependency = myFixture.addFileToProject("b.clj", "(ns b (:gen-class))\n" +
+        "(defn f [] 1)");
+    myFixture.addFileToProject("a.clj", "(ns a (:require b) (:gen-class))\n" +
+        "(defn -main [] (println (b/f)))");
+    myFixture.addFileToProject("x.clj", "(ns x (:gen-class))\n" +
+        "(defn -main [] (println 1))");
+    myFixture.addFileToProject("y.clj", "(ns y (:gen-class))\n" +
+        "(defn -main [] (println 2))");
+    assertEmpty(myTester.make());
+    for (String className : new String[]{"a", "b", "x", "y"}) {
+      assertNotNull(className, myTester.findClassFile(className, myModule));
+    }
+
+    myTester.setFileText(dependency, "(ns b (:gen-class))\n" +
+        "(defn g [] 2)\n" +
+        "(def f g)");
+    assertEmpty(myTester.make());
+    assertNotNull(myTester.findClassFile("b$g", myModule));
+  }
+
+  public void testCompileServerReloadsChangedDependency() throws Exception {
+    ClojureCompilerSettings.getInstance(getProject()).getState().USE_COMPILE_SERVER = true;
+    myFixture.addClass("class Foo {}");
+    final PsiFile dependency = myFixture.addFileToProject("b.clj", "(ns b)\n" +
+        "(defn f [] 1)");
+    myFixture.addFileToProject("a.clj", "(ns a (:require b) (:gen-class))\n" +
+        "(defn -main [] (println (b/f)))");
+    assertEmpty(myTester.make());
+    assertNotNull(myTester.findClassFile("b$f", myModule));
+    //only a running server publishes its port
+    final File[] portFiles = getServerPortFiles();
+    assertEquals(1, portFiles.length);
+    final String server = FileUtil.loadFile(portFiles[0]);
+
+    //the server has loaded b already, it must be compiled from the new source anyway
+    myTester.setFileText(dependency, "(ns b)\n" +
+        "(defn g [] 2)\n" +
+        "(def f g)");
+    assertEmpty(myTester.make());
+    assertNotNull(myTester.findClassFile("b$g", myModule));
+    assertEquals(server, FileUtil.loadFile(portFiles[0]));
+  }
+
+  private static File[] getServerPortFiles() {
+    final File[] portFiles = ClojureCompileServer.getServerDirectory(BuildManager.getInstance().getBuildSystemDirectory())
+        .listFiles(new FileFilter() {
+          public boolean accept(File file) {
+            return file.getName().endsWith(".port");
+          }
+        });
+    return portFiles == null ? new File[0] : portFiles;
+  }
+
   @Override
   protected void tearDown() throws Exception {
+    ClojureCompileServer.shutdownAll(BuildManager.getInstance().getBuildSystemDirectory());
     com.intellij.util.ui.UIUtil.invokeAndWaitIfNeeded(new Runnable() {
       public void run() {
         myTester.tearDown();
@@ -0,0 +1,166 @@
+package org.jetbrains.plugins.clojure.compiler;
+
+import junit.framework.TestCase;
+import org.jetbrains.jps.clojure.build.ClojureNamespaceGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Namespace dependencies tracked by the JPS builder between builds.
+ */
+public class ClojureNamespaceGraphTest extends TestCase {
+  private File myDataRoot;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDataRoot = File.createTempFile("clojure-graph", "");
+    assertTrue(myDataRoot.delete());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    File[] files = myDataRoot.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    myDataRoot.delete();
+    super.tearDown();
+  }
+
+  public void testStoredGraphIsLoaded() throws IOException {
+    ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(myDataRoot);
+    assertFalse(graph.isLoaded());
+    graph.put("a.clj", node("a", "b"));
+    graph.save();
+
+    ClojureNamespaceGraph loaded = ClojureNamespaceGraph.load(myDataRoot);
+    assertTrue(loaded.isLoaded());
+    assertEquals(Collections.singleton("b"), loaded.get("a.clj").dependencies);
+  }
+
+  public void testAffectedFilesIncludeTransitiveDependents() {
+    ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(myDataRoot);
+    graph.put("a.clj", node("a", "b"));
+    graph.put("b.clj", node("b", "c"));
+    graph.put("c.clj", node("c"));
+    graph.put("d.clj", node("d"));
+    graph.put("e.clj", node("e", "a", "d"));
+
+    assertEquals(set("a.clj", "b.clj", "c.clj", "e.clj"), graph.getAffectedFiles(Collections.singleton("c")));
+    assertEquals(set("d.clj", "e.clj"), graph.getAffectedFiles(Collections.singleton("d")));
+    assertEquals(set("e.clj"), graph.getAffectedFiles(Collections.singleton("e")));
+  }
+
+  public void testAffectedFilesOfRemovedNamespace() {
+    ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(myDataRoot);
+    graph.put("a.clj", node("a", "b"));
+    graph.put("c.clj", node("c", "a"));
+
+    assertEquals(set("a.clj", "c.clj"), graph.getAffectedFiles(Collections.singleton("b")));
+  }
+
+  public void testDependenciesAreSortedFirst() {
+    ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(myDataRoot);
+    graph.put("a.clj", node("a", "b", "c"));
+    graph.put("b.clj", node("b", "c"));
+    graph.put("c.clj", node("c"));
+    graph.put("d.clj", node("d", "a"));
+
+    List<String> sorted = graph.sortTopologically(Arrays.asList("d.clj", "a.clj", "b.clj", "c.clj"));
+    assertEquals(Arrays.asList("c.clj", "b.clj", "a.clj", "d.clj"), sorted);
+  }
+
+  public void testOnlyGivenFilesAreSorted() {
+    ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(myDataRoot);
+    graph.put("a.clj", node("a", "b"));
+    graph.put("b.clj", node("b", "c"));
+    graph.put("c.clj", node("c"));
+
+    assertEquals(Arrays.asList("c.clj", "a.clj"), graph.sortTopologically(Arrays.asList("a.clj", "c.clj")));
+  }
+
+  public void testCyclicDependenciesAreSorted() {
+    ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(myDataRoot);
+    graph.put("a.clj", node("a", "b"));
+    graph.put("b.clj", node("b", "c"));
+    graph.put("c.clj", node("c", "a"));
+    graph.put("d.clj", node("d", "d"));
+
+    List<String> sorted = graph.sortTopologically(Arrays.asList("a.clj", "b.clj", "c.clj", "d.clj"));
+    assertEquals(4, sorted.size());
+    assertEquals(set("a.clj", "b.clj", "c.clj", "d.clj"), new HashSet<String>(sorted));
+    assertEquals(set("a.clj", "b.clj", "c.clj"), graph.getAffectedFiles(Collections.singleton("a")));
+  }
+
+  public void testPartitionKeepsComponentsTogether() {
+    ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(myDataRoot);
+    graph.put("a.clj", node("a", "b"));
+    graph.put("b.clj", node("b"));
+    graph.put("c.clj", node("c", "d"));
+    graph.put("d.clj", node("d", "e"));
+    graph.put("e.clj", node("e"));
+    graph.put("f.clj", node("f", "clojure.string"));
+    graph.put("g.clj", node("g"));
+    graph.put("h.clj", node("h", "b"));
+
+    List<String> sorted = graph.sortTopologically(Arrays.asList("a.clj", "b.clj", "c.clj", "d.clj", "e.clj", "f.clj", "g.clj", "h.clj"));
+    for (int groupCount = 1; groupCount <= 5; groupCount++) {
+      List<List<String>> groups = graph.partition(sorted, groupCount);
+      assertTrue(groups.size() <= groupCount);
+      assertEquals(Math.min(groupCount, 4), groups.size());
+
+      Set<String> all = new HashSet<String>();
+      for (List<String> group : groups) {
+        for (String path : group) {
+          assertTrue(all.add(path));
+        }
+        assertInOrder(sorted, group);
+        assertSameGroup(group, "a.clj", "b.clj", "h.clj");
+        assertSameGroup(group, "c.clj", "d.clj", "e.clj");
+      }
+      assertEquals(new HashSet<String>(sorted), all);
+    }
+  }
+
+  public void testPartitionOfCycle() {
+    ClojureNamespaceGraph graph = ClojureNamespaceGraph.load(myDataRoot);
+    graph.put("a.clj", node("a", "b"));
+    graph.put("b.clj", node("b", "a"));
+    graph.put("c.clj", node("c"));
+
+    List<String> sorted = graph.sortTopologically(Arrays.asList("a.clj", "b.clj", "c.clj"));
+    List<List<String>> groups = graph.partition(sorted, 3);
+    assertEquals(2, groups.size());
+    for (List<String> group : groups) {
+      assertInOrder(sorted, group);
+      assertSameGroup(group, "a.clj", "b.clj");
+    }
+  }
+
+  private static void assertInOrder(List<String> sorted, List<String> group) {
+    List<String> expected = new ArrayList<String>(sorted);
+    expected.retainAll(group);
+    assertEquals(expected, group);
+  }
+
+  private static void assertSameGroup(List<String> group, String... paths) {
+    int count = 0;
+    for (String path : paths) {
+      if (group.contains(path)) count++;
+    }
+    assertTrue(group.toString(), count == 0 || count == paths.length);
+  }
+
+  private static ClojureNamespaceGraph.Node node(String namespace, String... dependencies) {
+    return new ClojureNamespaceGraph.Node(namespace, new LinkedHashSet<String>(Arrays.asList(dependencies)), true, 0, 0);
+  }
+
+  private static Set<String> set(String... paths) {
+    return new HashSet<String>(Arrays.asList(paths));
+  }
+}
@@ -0,0 +1,75 @@
+package org.jetbrains.plugins.clojure.compiler;
+
+import junit.framework.TestCase;
+import org.jetbrains.jps.clojure.build.ClojureNamespaceHeader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+/**
+ * Namespace headers read by the JPS builder without the Clojure runtime.
+ */
+public class ClojureNamespaceHeaderTest extends TestCase {
+  private static final int DEPTH = 100000;
+
+  public void testHeader() throws IOException {
+    final ClojureNamespaceHeader header = ClojureNamespaceHeader.parse(new StringReader(
+        "; comment\n(comment (a (b)))\n#_(x)\n(ns ^:no-doc a.b \"doc\" {:m 1}\n" +
+            "  (:require [c.d :as d] (e f [g :refer [h]]) \"i\")\n  (:use j)\n  (:gen-class :methods [[k [] void]]))"));
+    assertNotNull(header);
+    assertEquals("a.b", header.getName());
+    assertEquals(new LinkedHashSet<String>(Arrays.asList("c.d", "e.f", "e.g", "j")), header.getDependencies());
+    assertTrue(header.isGenClass());
+  }
+
+  public void testDeeplyNestedFormIsSkipped() throws IOException {
+    final StringBuilder text = new StringBuilder("(comment ");
+    for (int i = 0; i < DEPTH; i++) {
+      text.append("[{#{(");
+    }
+    for (int i = 0; i < DEPTH; i++) {
+      text.append(")}}]");
+    }
+    text.append(")\n(ns a (:require b))");
+    final ClojureNamespaceHeader header = ClojureNamespaceHeader.parse(new StringReader(text.toString()));
+    assertNotNull(header);
+    assertEquals("a", header.getName());
+  }
+
+  public void testReadingStopsAtFirstOtherForm() throws IOException {
+    final CountingReader input = new CountingReader("(def x 1)\n(ns a (:gen-class))\n" + repeat("(def y 2)\n", 10000));
+    assertNull(ClojureNamespaceHeader.parse(input));
+    assertTrue(input.myRead < 100);
+  }
+
+  private static String repeat(String text, int count) {
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      result.append(text);
+    }
+    return result.toString();
+  }
+
+  private static class CountingReader extends Reader {
+    private final Reader myReader;
+    private int myRead;
+
+    private CountingReader(String text) {
+      myReader = new StringReader(text);
+    }
+
+    @Override
+    public int read(char[] buffer, int off, int len) throws IOException {
+      final int n = myReader.read(buffer, off, Math.min(len, 1));
+      if (n > 0) myRead += n;
+      return n;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
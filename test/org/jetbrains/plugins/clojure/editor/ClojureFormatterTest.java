@@ -5,13 +5,20 @@ import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiFileFactory;
 import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.LocalTimeCounter;
+import com.intellij.util.ThrowableRunnable;
 import org.jetbrains.plugins.clojure.base.ClojureBaseTestCase;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipFile;
+
 /**
  * @author ilyas
  */
@@ -19,6 +26,7 @@ public class ClojureFormatterTest extends ClojureBaseTestCase {
 
   private static final String DATA_PATH = System.getProperty("user.dir") + "/testdata/formatter/";
   private static final String TEST_FILE_NAME = "test";
+  private static final String CLOJURE_JAR = System.getProperty("user.dir") + "/testdata/mockClojureLib/clojure-1.5.jar";
 
   public String getDataPath() {
     return DATA_PATH;
@@ -41,6 +49,12 @@ public class ClojureFormatterTest extends ClojureBaseTestCase {
     final String expected = fetchFile("", testName, TEST_FILE_EXT);
 
     final PsiFile psiFile = createPseudoPhysicalFile(getProject(), "test.clj", contents);
+    reformat(psiFile);
+
+    assertEquals(expected, psiFile.getText());
+  }
+
+  private void reformat(final PsiFile psiFile) {
     final TextRange textRange = psiFile.getTextRange();
 
     CommandProcessor.getInstance().executeCommand(getProject(), new Runnable() {
@@ -52,8 +66,25 @@ public class ClojureFormatterTest extends ClojureBaseTestCase {
         });
       }
     }, null, null);
+  }
 
-    assertEquals(expected, psiFile.getText());
+  /**
+   * @return source of a namespace from the Clojure jar
+   */
+  private static String loadClojureSource(String path) throws IOException {
+    final ZipFile jar = new ZipFile(CLOJURE_JAR);
+    try {
+      final InputStream stream = jar.getInputStream(jar.getEntry(path));
+      try {
+        return new String(FileUtil.loadBytes(stream), "UTF-8");
+      }
+      finally {
+        stream.close();
+      }
+    }
+    finally {
+      jar.close();
+    }
   }
 
   public void testClj_98() {
@@ -67,4 +98,15 @@ public class ClojureFormatterTest extends ClojureBaseTestCase {
   public void testKeywordBeforeBrace() {
     doFormat();
   }
+
+  public void testReformatLargeFilesPerformance() throws Exception {
+    final String core = loadClojureSource("clojure/core.clj");
+    final String clFormat = loadClojureSource("clojure/pprint/cl_format.clj");
+    PlatformTestUtil.startPerformanceTest("reformatting clojure.core and clojure.pprint.cl-format", 20000, new ThrowableRunnable() {
+      public void run() throws Throwable {
+        reformat(createPseudoPhysicalFile(getProject(), "core.clj", core));
+        reformat(createPseudoPhysicalFile(getProject(), "cl_format.clj", clFormat));
+      }
+    }).cpuBound().assertTiming();
+  }
 }
@@ -0,0 +1,92 @@
+package org.jetbrains.plugins.clojure.editor.braceHighlighter;
+
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.impl.source.tree.LeafPsiElement;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import org.jetbrains.plugins.clojure.base.ClojureLightPlatformCodeInsightTestCase;
+import org.jetbrains.plugins.clojure.parser.ClojureElementTypes;
+import org.jetbrains.plugins.clojure.psi.api.ClList;
+
+/**
+ * Levels of parentheses, checking cached levels against the number of enclosing lists after changes.
+ */
+public class ClojureBraceLevelsTest extends ClojureLightPlatformCodeInsightTestCase {
+  public void testLevels() {
+    configureFromFileText("a.clj", "(ns a)\n(defn f [x] (let [y {:a (g x)}] #{(h y)}))\n)\n(def z '(1 (2)))\n");
+    assertEquals(0, ClojureBraceLevels.getLevel(getFile().findElementAt(0)));
+    assertEquals(2, ClojureBraceLevels.getLevel(getFile().findElementAt(getFile().getText().indexOf("(g"))));
+    assertEquals(-1, ClojureBraceLevels.getLevel(getFile().findElementAt(getFile().getText().indexOf(")\n(def"))));
+    checkLevels();
+  }
+
+  public void testLevelsAfterChanges() {
+    configureFromFileText("a.clj", "(defn f [x]\n  (g x<caret>))\n\n(defn h [y]\n  (i (j y)))\n");
+    checkLevels();
+    typeAndCheck(" (k [l (m)]");
+    typeAndCheck(")");
+    getEditor().getCaretModel().moveToOffset(getFile().getText().indexOf("(defn h"));
+    typeAndCheck("(");
+    typeAndCheck(")");
+  }
+
+  public void testLevelsPerformance() throws Exception {
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      text.append("(defn f").append(i).append(" [x]\n");
+      for (int j = 0; j < 30; j++) {
+        text.append(" (g");
+      }
+      text.append(" x");
+      for (int j = 0; j < 30; j++) {
+        text.append(")");
+      }
+      text.append(")\n");
+    }
+    configureFromFileText("large.clj", text.toString());
+    getEditor().getCaretModel().moveToOffset(getFile().getText().indexOf(" x)") + 2);
+
+    PlatformTestUtil.startPerformanceTest("rainbow brace levels of deeply nested forms", 3000, new ThrowableRunnable() {
+      public void run() throws Throwable {
+        for (int i = 0; i < 20; i++) {
+          type(i % 2 == 0 ? ' ' : 'a');
+          PsiDocumentManager.getInstance(getProject()).commitDocument(getEditor().getDocument());
+          for (LeafPsiElement leaf : PsiTreeUtil.findChildrenOfType(getFile(), LeafPsiElement.class)) {
+            if (leaf.getElementType() == ClojureElementTypes.LEFT_PAREN) {
+              ClojureBraceLevels.getLevel(leaf);
+            }
+          }
+        }
+      }
+    }).cpuBound().assertTiming();
+    checkLevels();
+  }
+
+  private void typeAndCheck(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      type(text.charAt(i));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(getEditor().getDocument());
+      checkLevels();
+    }
+  }
+
+  private void checkLevels() {
+    for (LeafPsiElement leaf : PsiTreeUtil.findChildrenOfType(getFile(), LeafPsiElement.class)) {
+      if (leaf.getElementType() == ClojureElementTypes.LEFT_PAREN || leaf.getElementType() == ClojureElementTypes.RIGHT_PAREN) {
+        assertEquals(getFile().getText(), countLists(leaf), ClojureBraceLevels.getLevel(leaf));
+      }
+    }
+  }
+
+  private static int countLists(PsiElement element) {
+    int level = -1;
+    for (PsiElement parent = element; parent != null; parent = parent.getParent()) {
+      if (parent instanceof ClList) {
+        level++;
+      }
+    }
+    return level;
+  }
+}
@@ -0,0 +1,62 @@
+package org.jetbrains.plugins.clojure.parser;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import com.intellij.psi.tree.TokenSet;
+import org.jetbrains.plugins.clojure.base.ClojureLightPlatformCodeInsightTestCase;
+import org.jetbrains.plugins.clojure.lexer.ClojureFlexLexer;
+
+/**
+ * Parsing of large files to a skeleton of namespace forms, definition names and collapsed forms.
+ */
+public class ClojureLightweightModeTest extends ClojureLightPlatformCodeInsightTestCase {
+  private static final String HEADER = "(ns data.large (:require [clojure.string :as s]))\n" +
+      "(def ^:private table [1 2 3])\n" +
+      "(defmethod area :square [x] (* x x))\n" +
+      "#{:a} 'b {:c [d]}\n";
+
+  public void testSkeleton() {
+    final StringBuilder text = new StringBuilder(HEADER);
+    while (text.length() <= 1024 * 1024) {
+      text.append("{:id 1 :tags [\"a\" \"b\"] :nested {:x (f 1 2)}}\n");
+    }
+    final ASTNode file = parse(text);
+    assertEquals(text.length(), file.getTextLength());
+
+    final ASTNode ns = file.findChildByType(ClojureElementTypes.NS);
+    assertNotNull(ns);
+    assertNotNull(ns.findChildByType(ClojureElementTypes.LIST));
+
+    final ASTNode def = file.findChildByType(ClojureElementTypes.DEF);
+    assertNotNull(def);
+    assertNotNull(def.findChildByType(ClojureElementTypes.META_FORM));
+    assertEquals("table", def.getChildren(TokenSet.create(ClojureElementTypes.SYMBOL))[1].getText());
+    assertEquals("[1 2 3]", def.findChildByType(ClojureElementTypes.SKELETON).getText());
+
+    final ASTNode defmethod = file.findChildByType(ClojureElementTypes.DEFMETHOD);
+    assertNotNull(defmethod);
+    assertEquals(":square [x] (* x x)", defmethod.findChildByType(ClojureElementTypes.SKELETON).getText());
+
+    int skeletons = 0;
+    for (ASTNode form = file.getFirstChildNode(); form != null; form = form.getTreeNext()) {
+      assertFalse(ClojureElementTypes.LIST_LIKE_FORMS.contains(form.getElementType()) && form != ns && form != def && form != defmethod);
+      if (form.getElementType() == ClojureElementTypes.SKELETON) {
+        assertNull(form.getFirstChildNode());
+        skeletons++;
+      }
+    }
+    assertTrue(skeletons > 10000);
+  }
+
+  public void testSmallFileIsParsedFully() {
+    final ASTNode file = parse(HEADER);
+    assertNull(file.findChildByType(ClojureElementTypes.SKELETON));
+    assertNotNull(file.findChildByType(ClojureElementTypes.SET));
+  }
+
+  private static ASTNode parse(CharSequence text) {
+    final PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(new ClojureParserDefinition(), new ClojureFlexLexer(), text);
+    return new ClojureParser().parse(ClojureElementTypes.FILE, builder);
+  }
+}
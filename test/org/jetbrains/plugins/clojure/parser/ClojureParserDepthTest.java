@@ -0,0 +1,114 @@
+package org.jetbrains.plugins.clojure.parser;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import org.jetbrains.plugins.clojure.base.ClojureLightPlatformCodeInsightTestCase;
+import org.jetbrains.plugins.clojure.lexer.ClojureFlexLexer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Parsing of deeply nested forms with an explicit stack, checking it builds the same trees as recursive descent.
+ */
+public class ClojureParserDepthTest extends ClojureLightPlatformCodeInsightTestCase {
+  private static final String DATA_PATH = System.getProperty("user.dir") + "/testdata/parser/";
+  private static final int DEPTH = 100000;
+
+  public void testStackModeOnParserTestData() throws IOException {
+    final File[] files = new File(DATA_PATH).listFiles();
+    assertNotNull(files);
+    for (File file : files) {
+      if (file.getName().endsWith(".test")) {
+        assertSameTrees(FileUtil.loadFile(file, true));
+      }
+    }
+  }
+
+  public void testStackModeOnMalformedForms() {
+    assertSameTrees("(defn f [x] {:a x :b} #{1 (2 [3)} '");
+    assertSameTrees("(ns a (:require [b :as c])) (in-ns 'd) (create-ns 'e)");
+    assertSameTrees("(defmethod m :k [x] ^{:tag String} x) #^Object o `(~a ~@b @c #(inc %))");
+    assertSameTrees("{:a");
+    assertSameTrees("[a ']] ) (b ^");
+    assertSameTrees("(a.b/c d. .e /) #{");
+  }
+
+  public void testDeepNesting() {
+    final StringBuilder text = new StringBuilder();
+    final String[] opening = {"(f ", "[", "{:k ", "#{", "'(", "^:m ["};
+    final String[] closing = {")", "]", "}", "}", ")", "]"};
+    for (int i = 0; i < DEPTH; i++) {
+      text.append(opening[i % opening.length]);
+    }
+    text.append("x");
+    for (int i = DEPTH - 1; i >= 0; i--) {
+      text.append(closing[i % closing.length]);
+    }
+    assertTrue(getDepth(parse(new ClojureParser(), text)) > DEPTH);
+  }
+
+  public void testDeepUnclosedNesting() {
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < DEPTH; i++) {
+      text.append("(a {:b [");
+    }
+    assertTrue(getDepth(parse(new ClojureParser(), text)) > DEPTH);
+  }
+
+  public void testParsingPerformance() throws Exception {
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      text.append("(defn f").append(i).append(" [x] (let [m {:a [1 2 #{3}] :b '(4 5)}] (str x m)))\n");
+    }
+    for (int i = 0; i < 20000; i++) {
+      text.append("[:div {:class \"c\"} ");
+    }
+    for (int i = 0; i < 20000; i++) {
+      text.append("]");
+    }
+    PlatformTestUtil.startPerformanceTest("parsing flat and deeply nested forms", 3000, new ThrowableRunnable() {
+      public void run() throws Throwable {
+        parse(new ClojureParser(), text);
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static void assertSameTrees(String text) {
+    final String expected = DebugUtil.treeToString(parse(new ClojureParser(Integer.MAX_VALUE), text), false);
+    assertEquals(text, expected, DebugUtil.treeToString(parse(new ClojureParser(0), text), false));
+    assertEquals(text, expected, DebugUtil.treeToString(parse(new ClojureParser(2), text), false));
+  }
+
+  private static ASTNode parse(ClojureParser parser, CharSequence text) {
+    final PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(new ClojureParserDefinition(), new ClojureFlexLexer(), text);
+    return parser.parse(ClojureElementTypes.FILE, builder);
+  }
+
+  /**
+   * Walks the tree without recursion
+   */
+  private static int getDepth(ASTNode root) {
+    int depth = 0;
+    int maxDepth = 0;
+    ASTNode node = root;
+    while (node != null) {
+      if (node.getFirstChildNode() != null) {
+        node = node.getFirstChildNode();
+        maxDepth = Math.max(maxDepth, ++depth);
+        continue;
+      }
+      while (node != null && node != root && node.getTreeNext() == null) {
+        node = node.getTreeParent();
+        depth--;
+      }
+      node = node == null || node == root ? null : node.getTreeNext();
+    }
+    return maxDepth;
+  }
+}
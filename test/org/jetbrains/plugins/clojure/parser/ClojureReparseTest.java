@@ -0,0 +1,129 @@
+package org.jetbrains.plugins.clojure.parser;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.tree.IReparseableElementType;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import org.jetbrains.plugins.clojure.base.ClojureLightPlatformCodeInsightTestCase;
+import org.jetbrains.plugins.clojure.file.ClojureFileType;
+
+/**
+ * Typing inside collections, checking that collections reparsed alone have the same tree as the whole file
+ * parsed again.
+ */
+public class ClojureReparseTest extends ClojureLightPlatformCodeInsightTestCase {
+  private static final int FUNCTIONS = 1000;
+
+  public void testParsable() {
+    assertTrue(isParsable(ClojureElementTypes.VECTOR, "[a b/c 'd ^:e f #{g} {:h [i]}]"));
+    assertTrue(isParsable(ClojureElementTypes.MAP, "{:a 1 ; comment }\n :b \"}\"}"));
+    assertTrue(isParsable(ClojureElementTypes.SET, "#{a (b) [c]}"));
+
+    assertFalse(isParsable(ClojureElementTypes.VECTOR, "[a (b]"));
+    assertFalse(isParsable(ClojureElementTypes.VECTOR, "[a] [b]"));
+    assertFalse(isParsable(ClojureElementTypes.VECTOR, "[a \"b]"));
+    assertFalse(isParsable(ClojureElementTypes.VECTOR, "[a (b])"));
+    assertFalse(isParsable(ClojureElementTypes.VECTOR, "[a ']"));
+    assertFalse(isParsable(ClojureElementTypes.VECTOR, "[a {:b}]"));
+    assertFalse(isParsable(ClojureElementTypes.MAP, "{:a 1 :b}"));
+    assertFalse(isParsable(ClojureElementTypes.MAP, "#{a}"));
+    assertFalse(isParsable(ClojureElementTypes.SET, "{a}"));
+  }
+
+  public void testTypingInCollections() {
+    configureFromFileText("a.clj", "(defn f [x<caret>]\n  (let [m {:a 1}\n        s #{2}]\n    (g x m s)))\n(def z 1)\n");
+    typeAndCheck(" y 'z ^:m ");
+    moveTo("{:a 1");
+    typeAndCheck(" :b [c] :d");
+    moveTo("#{2");
+    typeAndCheck(" (h) 'i");
+  }
+
+  public void testUntouchedFormsAreKept() {
+    configureFromFileText("a.clj", "(ns a)\n(defn f [x<caret>]\n  (let [m {:a 1}]\n    (g x m)))\n(def z [1 2])\n");
+    final ASTNode ns = getFile().getNode().getFirstChildNode();
+    final ASTNode defn = findNode("(defn f");
+    final ASTNode parameters = findNode("[x]");
+    final ASTNode map = findNode("{:a 1}");
+    final ASTNode call = findNode("(g x m)");
+    final ASTNode def = findNode("(def z");
+    final ASTNode vector = findNode("[1 2]");
+    typeAndCheck(" y");
+
+    // the edited vector is replaced by a node of its own, lazily parsed, and nothing around it is touched
+    final ASTNode newParameters = findNode("[x y]");
+    assertNotSame(parameters, newParameters);
+    assertInstanceOf(newParameters, LazyParseableElement.class);
+    assertSame(defn, newParameters.getTreeParent());
+    assertSame(defn, findNode("(defn f"));
+    assertSame(ns, getFile().getNode().getFirstChildNode());
+    assertSame(map, findNode("{:a 1}"));
+    assertSame(call, findNode("(g x m)"));
+    assertSame(def, findNode("(def z"));
+    assertSame(vector, findNode("[1 2]"));
+  }
+
+  public void testTypingInLargeFile() throws Exception {
+    final StringBuilder text = new StringBuilder();
+    text.append("(ns perf.typing)\n\n");
+    for (int i = 0; i < FUNCTIONS; i++) {
+      text.append("(defn f").append(i).append(" [x y]\n");
+      text.append("  (let [m {:x x :y y :i ").append(i).append("}]\n");
+      text.append("    (str (:x m) (:y m))))\n\n");
+    }
+    configureFromFileText("large.clj", text.toString());
+    moveTo("(defn f" + FUNCTIONS / 2 + " [x y");
+
+    PlatformTestUtil.startPerformanceTest("typing in a vector of a 4,000-line file", 3000, new ThrowableRunnable() {
+      public void run() throws Throwable {
+        for (int i = 0; i < 20; i++) {
+          type(i % 2 == 0 ? ' ' : 'a');
+          PsiDocumentManager.getInstance(getProject()).commitDocument(getEditor().getDocument());
+        }
+      }
+    }).cpuBound().assertTiming();
+    assertEquals(parse(getFile().getText()), DebugUtil.psiToString(getFile(), false));
+  }
+
+  private void typeAndCheck(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      type(text.charAt(i));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(getEditor().getDocument());
+      assertEquals(getFile().getText(), parse(getFile().getText()), DebugUtil.psiToString(getFile(), false));
+    }
+  }
+
+  /**
+   * @return node of the form starting at the text
+   */
+  private ASTNode findNode(String text) {
+    final int offset = getFile().getText().indexOf(text);
+    assertTrue(offset >= 0);
+    ASTNode node = getFile().getNode().findLeafElementAt(offset);
+    while (node.getTreeParent() != null && node.getTreeParent().getStartOffset() == offset &&
+        node.getTreeParent() != getFile().getNode()) {
+      node = node.getTreeParent();
+    }
+    return node;
+  }
+
+  private void moveTo(String prefix) {
+    final int offset = getFile().getText().indexOf(prefix);
+    assertTrue(offset >= 0);
+    getEditor().getCaretModel().moveToOffset(offset + prefix.length());
+  }
+
+  private String parse(String text) {
+    final PsiFile file = PsiFileFactory.getInstance(getProject()).createFileFromText("b.clj", ClojureFileType.CLOJURE_FILE_TYPE, text);
+    return DebugUtil.psiToString(file, false);
+  }
+
+  private boolean isParsable(Object type, String text) {
+    return ((IReparseableElementType) type).isParsable(text, ClojureFileType.CLOJURE_LANGUAGE, getProject());
+  }
+}
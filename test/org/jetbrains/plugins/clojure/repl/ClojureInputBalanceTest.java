@@ -0,0 +1,69 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import org.jetbrains.plugins.clojure.base.ClojureLightPlatformCodeInsightTestCase;
+
+public class ClojureInputBalanceTest extends ClojureLightPlatformCodeInsightTestCase {
+
+  public void testCompleteForms() {
+    assertTrue(ClojureInputBalance.isComplete("(+ 1 2)"));
+    assertTrue(ClojureInputBalance.isComplete("(defn f [x] {:a [x \")]\"]}) ; (unbalanced comment\n"));
+    assertTrue(ClojureInputBalance.isComplete("(str \\( \\[) 'a"));
+  }
+
+  public void testNoForms() {
+    assertFalse(ClojureInputBalance.isComplete(""));
+    assertFalse(ClojureInputBalance.isComplete(" \n\t"));
+    assertFalse(ClojureInputBalance.isComplete("; (+ 1 2)\n"));
+  }
+
+  public void testIncompleteForms() {
+    assertFalse(ClojureInputBalance.isComplete("(+ 1 2"));
+    assertFalse(ClojureInputBalance.isComplete("(str \"abc)"));
+    assertFalse(ClojureInputBalance.isComplete("(+ 1 2))"));
+    assertFalse(ClojureInputBalance.isComplete("[1 2)"));
+    assertFalse(ClojureInputBalance.isComplete("(map inc) '"));
+  }
+
+  public void testTyping() {
+    final Document document = EditorFactory.getInstance().createDocument("");
+    final ClojureInputBalance balance = new ClojureInputBalance(document, getTestRootDisposable());
+    final String text = "(defn f [x]\n  (let [s \"(]\"]\n    (str s x))) ; done";
+    for (int i = 0; i < text.length(); i++) {
+      replace(document, i, i, text.substring(i, i + 1));
+      assertEquals(document.getText(), ClojureInputBalance.isComplete(document.getText()), balance.isComplete());
+    }
+    assertTrue(balance.isComplete());
+  }
+
+  public void testEditingInTheMiddle() {
+    final Document document = EditorFactory.getInstance().createDocument("(a (b \"c\") [d])");
+    final ClojureInputBalance balance = new ClojureInputBalance(document, getTestRootDisposable());
+    assertTrue(balance.isComplete());
+
+    replace(document, 8, 9, "");
+    assertFalse(balance.isComplete());
+    replace(document, 8, 8, "\"");
+    assertTrue(balance.isComplete());
+
+    replace(document, 3, 3, "(");
+    assertFalse(balance.isComplete());
+    replace(document, 3, 4, "");
+    assertTrue(balance.isComplete());
+
+    replace(document, 0, document.getTextLength(), "(x");
+    assertFalse(balance.isComplete());
+    replace(document, 0, document.getTextLength(), "  ");
+    assertFalse(balance.isComplete());
+  }
+
+  private static void replace(final Document document, final int start, final int end, final String text) {
+    ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      public void run() {
+        document.replaceString(start, end, text);
+      }
+    });
+  }
+}
@@ -0,0 +1,66 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import junit.framework.TestCase;
+
+public class ClojurePromptTokenizerTest extends TestCase {
+
+  public void testPrompt() {
+    doTest("[Clojure 1.5.1\n]<user=> >", "Clojure 1.5.1\nuser=> ");
+  }
+
+  public void testPromptSplitBetweenChunks() {
+    doTest("[Clojure 1.5.1\n]<user=> >[3\n]<user=> >", "Clojure 1.5.1\nus", "er", "=", ">", " 3\nuser=> ");
+  }
+
+  public void testSeveralPrompts() {
+    doTest("<user=> ><my.ns-a=> >", "user=> my.ns-a=> ");
+  }
+
+  public void testNotPrompt() {
+    doTest("[a=>b\n=> c\n1=> d\n]", "a=>b\n=> c\n1=> d\n");
+  }
+
+  public void testHeldBackOutput() {
+    doTest("[abc=][d\n]", "ab", "c=", "d\n");
+  }
+
+  public void testFlush() {
+    doTest("[user=>]", "user=>");
+  }
+
+  public void testPromptInsideLine() {
+    doTest("[x user=> 1\n]", "x user=> 1\n");
+  }
+
+  public void testSingleCharacterChunks() {
+    final String text = "(1 2 3)\nuser=> nil\nuser=> ";
+    final String[] chunks = new String[text.length()];
+    for (int i = 0; i < text.length(); i++) {
+      chunks[i] = text.substring(i, i + 1);
+    }
+    final String result = tokenize(chunks);
+    assertEquals("(1 2 3)\n<user=> >nil\n<user=> >", result.replace("[", "").replace("]", ""));
+  }
+
+  private static void doTest(String expected, String... chunks) {
+    assertEquals(expected, tokenize(chunks));
+  }
+
+  private static String tokenize(String... chunks) {
+    final StringBuilder result = new StringBuilder();
+    final ClojurePromptTokenizer tokenizer = new ClojurePromptTokenizer(new ClojurePromptTokenizer.Listener() {
+      public void output(String text) {
+        result.append('[').append(text).append(']');
+      }
+
+      public void prompt(String prompt) {
+        result.append('<').append(prompt).append('>');
+      }
+    });
+    for (String chunk : chunks) {
+      tokenizer.feed(chunk);
+    }
+    tokenizer.flush();
+    return result.toString();
+  }
+}
@@ -0,0 +1,139 @@
+package org.jetbrains.plugins.clojure.repl;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import junit.framework.TestCase;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pumps output of a fake REPL process through {@link ClojureReplProcessHandler.ReadProcessThread}, checking
+ * the time the pump costs.
+ */
+public class ClojureReplOutputPerformanceTest extends TestCase {
+  private static final long OUTPUT_SIZE = 100L * 1024 * 1024;
+
+  public void testPumpingLargeOutput() throws Exception {
+    PlatformTestUtil.startPerformanceTest("pumping 100 MB of REPL output", 5000, new ThrowableRunnable() {
+      public void run() throws Throwable {
+        pumpLargeOutput();
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static void pumpLargeOutput() throws Exception {
+    final long[] received = {0};
+    final int[] chunks = {0};
+    final long start = System.nanoTime();
+    new ClojureReplProcessHandler.ReadProcessThread(new InputStreamReader(new FakeProcessOutput(OUTPUT_SIZE), "UTF-8")) {
+      protected void textAvailable(String s) {
+        received[0] += s.length();
+        chunks[0]++;
+      }
+    }.run();
+    final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(OUTPUT_SIZE, received[0]);
+    // output is coalesced by size or time, never by line
+    assertTrue(chunks[0] <= OUTPUT_SIZE / ClojureReplProcessHandler.ReadProcessThread.MAX_CHUNK_SIZE + 1 +
+        elapsed / ClojureReplProcessHandler.ReadProcessThread.NOTIFY_TEXT_DELAY);
+  }
+
+  public void testOutputIsDeliveredBeforeBlockingRead() throws Exception {
+    final CountDownLatch exit = new CountDownLatch(1);
+    final BlockingQueue<String> delivered = new LinkedBlockingQueue<String>();
+    final Thread pump = new Thread(new ClojureReplProcessHandler.ReadProcessThread(new PromptThenBlock(exit)) {
+      protected void textAvailable(String s) {
+        delivered.add(s);
+      }
+    });
+    pump.start();
+    try {
+      assertEquals(PromptThenBlock.PROMPT, delivered.poll(5, TimeUnit.SECONDS));
+    }
+    finally {
+      exit.countDown();
+      pump.join();
+    }
+  }
+
+  /**
+   * Standard output of a process printing a large data structure, readable in pipe-sized portions
+   */
+  private static class FakeProcessOutput extends InputStream {
+    private static final int PIPE_SIZE = 64 * 1024;
+    private static final byte[] LINE = "{:id 1234567, :name \"item\", :tags #{:a :b :c}, :value 3.14159}\n".getBytes();
+
+    private final long mySize;
+    private long myPosition;
+
+    private FakeProcessOutput(long size) {
+      mySize = size;
+    }
+
+    @Override
+    public int read() {
+      if (myPosition >= mySize) return -1;
+      return LINE[(int) (myPosition++ % LINE.length)];
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (myPosition >= mySize) return -1;
+      final int n = (int) Math.min(Math.min(len, PIPE_SIZE), mySize - myPosition);
+      for (int i = 0; i < n; i++) {
+        b[off + i] = LINE[(int) (myPosition++ % LINE.length)];
+      }
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(PIPE_SIZE, mySize - myPosition);
+    }
+  }
+
+  /**
+   * Output of a REPL printing a prompt and waiting for input until the latch is released
+   */
+  private static class PromptThenBlock extends Reader {
+    private static final String PROMPT = "user=> ";
+
+    private final CountDownLatch myExit;
+    private boolean myPromptRead;
+
+    private PromptThenBlock(CountDownLatch exit) {
+      myExit = exit;
+    }
+
+    @Override
+    public int read(char[] buffer, int off, int len) {
+      if (!myPromptRead) {
+        myPromptRead = true;
+        PROMPT.getChars(0, PROMPT.length(), buffer, off);
+        return PROMPT.length();
+      }
+      try {
+        myExit.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+      return -1;
+    }
+
+    @Override
+    public boolean ready() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package org.jetbrains.plugins.clojure.resolve;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.ThrowableRunnable;
+import org.jetbrains.plugins.clojure.base.ClojureLightPlatformCodeInsightTestCase;
+
+/**
+ * Highlighting of a 3,000-line file where almost every symbol is resolved to clojure.core, java.lang
+ * or a top-level definition of the same file, with empty resolve caches.
+ */
+public class ClojureResolvePerformanceTest extends ClojureLightPlatformCodeInsightTestCase {
+  private static final int FUNCTIONS = 500;
+
+  public void testHighlightingLargeFile() throws Exception {
+    final StringBuilder text = new StringBuilder();
+    text.append("(ns perf.large\n  (:import (java.util ArrayList)))\n\n");
+    for (int i = 0; i < FUNCTIONS; i++) {
+      final String previous = i == 0 ? "identity" : "f" + (i - 1);
+      text.append("(defn f").append(i).append(" \"Function ").append(i).append("\" [x y]\n");
+      text.append("  (let [z (map inc (range x)) l (ArrayList.)]\n");
+      text.append("    (when (instance? String y) (.add l (String/valueOf (count z))))\n");
+      text.append("    (str (").append(previous).append(" x) (reduce + z) (first (filter even? z)))))\n");
+      text.append(";; ").append(i).append("\n\n");
+    }
+    configureFromFileText("large.clj", text.toString());
+
+    PlatformTestUtil.startPerformanceTest("highlighting of a 3,000-line file", 15000, new ThrowableRunnable() {
+      public void run() throws Throwable {
+        highlight();
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private void highlight() {
+    getPsiManager().dropResolveCaches();
+    CodeInsightTestFixtureImpl.instantiateAndRun(getFile(), getEditor(), ArrayUtil.EMPTY_INT_ARRAY, false);
+  }
+}
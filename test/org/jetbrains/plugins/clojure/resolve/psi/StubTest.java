@@ -1,12 +1,23 @@
 package org.jetbrains.plugins.clojure.resolve.psi;
 
+import com.intellij.psi.PsiNamedElement;
 import com.intellij.psi.PsiReference;
 import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.StubIndex;
 import com.intellij.psi.stubs.StubUpdatingIndex;
 import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
 import com.intellij.util.indexing.FileBasedIndex;
 import org.jetbrains.plugins.clojure.psi.api.defs.ClDef;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNs;
+import org.jetbrains.plugins.clojure.psi.api.ns.ClNsDirectives;
+import org.jetbrains.plugins.clojure.psi.impl.ns.NamespaceUtil;
+import org.jetbrains.plugins.clojure.psi.stubs.index.ClojureNsAliasIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * @author peter
@@ -31,4 +42,48 @@ public class StubTest extends LightCodeInsightFixtureTestCase {
     assertInstanceOf(ref.resolve(), ClDef.class);
     assert !used.isContentsLoaded();
   }
+
+  public void testNamespaceDirectivesFromStub() {
+    PsiFileImpl lib = (PsiFileImpl) myFixture.addFileToProject("lib.clj",
+        "(ns lib\n" +
+        "  (:require [clojure.string :as str] (clojure [set :as s]))\n" +
+        "  (:use [clojure.walk :only [walk] :rename {walk w}])\n" +
+        "  (:import (java.util Date List) java.io.File))");
+
+    Collection<ClNs> nses = StubIndex.getInstance().get(ClojureNsAliasIndex.KEY, "str", getProject(), GlobalSearchScope.allScope(getProject()));
+    assertEquals(1, nses.size());
+    ClNsDirectives directives = nses.iterator().next().getDirectives();
+    assert !lib.isContentsLoaded();
+
+    assertEquals("clojure.string", directives.getAliases().get("str"));
+    assertEquals("clojure.set", directives.getAliases().get("s"));
+    assertEquals(1, directives.getRefers().size());
+    ClNsDirectives.Refer refer = directives.getRefers().get(0);
+    assertEquals("clojure.walk", refer.getNamespace());
+    assertEquals("w", refer.accept("walk"));
+    assertNull(refer.accept("prewalk"));
+    assertEquals(Arrays.asList("java.util.Date", "java.util.List", "java.io.File"), directives.getImports());
+  }
+
+  public void testDefinitionsOfMultiNamespaceFile() {
+    PsiFileImpl file = (PsiFileImpl) myFixture.addFileToProject("multi.clj",
+        "(ns first)\n" +
+        "(defn a [] (let [x 1] (def nested x)))\n" +
+        "(in-ns 'second)\n" +
+        "(defn b [])");
+
+    assertSameElements(getNames(NamespaceUtil.getDeclaredElements("first", getProject())), "a", "nested");
+    assertSameElements(getNames(NamespaceUtil.getDeclaredElements("second", getProject())), "b");
+    assertEmpty(NamespaceUtil.getDeclaredElements("first", "b", getProject()));
+    assertEquals(1, NamespaceUtil.getDeclaredElements("second", "b", getProject()).length);
+    assert !file.isContentsLoaded();
+  }
+
+  private static List<String> getNames(PsiNamedElement[] elements) {
+    List<String> names = new ArrayList<String>();
+    for (PsiNamedElement element : elements) {
+      names.add(element.getName());
+    }
+    return names;
+  }
 }
@@ -0,0 +1,48 @@
+package org.jetbrains.plugins.clojure.runner.console;
+
+import com.intellij.openapi.util.TextRange;
+import junit.framework.TestCase;
+
+public class ClojureFilterTest extends TestCase {
+
+  public void testStackTraceLine() {
+    doTest("\tat clojure.core$eval.invoke([core.clj:2852])\n");
+  }
+
+  public void testLastReference() {
+    doTest("(a.clj:1) at user$f.invoke([my_file.clj:10])");
+  }
+
+  public void testSkipsMalformedReferences() {
+    doTest("x([b.clj:2]) (c.clj:) (d.clj:3 e-f.clj:4) (.clj:5)");
+  }
+
+  public void testNoReference() {
+    doTest("at user$eval1.invoke(NO_SOURCE_FILE:1)");
+    doTest("core.clj:12");
+    doTest("");
+  }
+
+  public void testLongLine() {
+    final StringBuilder line = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      line.append("(x.clj:");
+    }
+    assertNull(ClojureFilter.findFileReference(line.toString()));
+  }
+
+  /**
+   * @param marked line with the expected reference in square brackets
+   */
+  private static void doTest(String marked) {
+    final int start = marked.indexOf('[');
+    final String line = marked.replace("[", "").replace("]", "");
+    final TextRange range = ClojureFilter.findFileReference(line);
+    if (start < 0) {
+      assertNull(range);
+    } else {
+      assertNotNull(range);
+      assertEquals(new TextRange(start, marked.indexOf(']') - 1), range);
+    }
+  }
+}